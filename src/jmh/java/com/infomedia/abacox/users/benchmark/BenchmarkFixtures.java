@@ -0,0 +1,76 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.jwt.JwtManager;
+import com.infomedia.abacox.users.component.jwt.SigningAlgorithm;
+import com.infomedia.abacox.users.component.jwt.SigningKeyStore;
+import com.infomedia.abacox.users.entity.Role;
+import com.infomedia.abacox.users.entity.User;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds the objects under benchmark outside of a Spring context, with the values from application.properties.
+ */
+final class BenchmarkFixtures {
+
+    static final String ENCRYPTION_KEY = "qZyYzReZh4o12gpfZYZlfFXEJzckpbvG";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @param tokenCacheMaxSize size of the verified-token cache, 1 makes alternating tokens always miss
+     */
+    static JwtManager jwtManager(int tokenCacheMaxSize) {
+        // HS256 signs with the shared secret, the key store (and its repository) is not used
+        JwtManager jwtManager = new JwtManager(new SigningKeyStore(null));
+        setField(jwtManager, "secretString", "8rDvNoKoBmVbH1O29iRUnjSfowx4RSWCvBmo990ekdDI9iqDRNxOI4pJOxzwBr4I");
+        setField(jwtManager, "encryptionKey", ENCRYPTION_KEY);
+        setField(jwtManager, "accessTokenDurationSec", 900L);
+        setField(jwtManager, "downloadTokenDuration", 900L);
+        setField(jwtManager, "refreshTokenDurationSec", 43200L);
+        setField(jwtManager, "clientName", "abacox");
+        setField(jwtManager, "tokenCacheMaxSize", tokenCacheMaxSize);
+        setField(jwtManager, "signingAlgorithm", SigningAlgorithm.HS256);
+        setField(jwtManager, "keyRotationDays", 30L);
+        setField(jwtManager, "acceptLegacyDownloadTokens", true);
+        Method init = ReflectionUtils.findMethod(JwtManager.class, "init");
+        ReflectionUtils.makeAccessible(init);
+        ReflectionUtils.invokeMethod(init, jwtManager);
+        return jwtManager;
+    }
+
+    static User user(int index) {
+        return User.builder()
+                .id(UUID.randomUUID())
+                .username("user" + index)
+                .firstName("First" + index)
+                .lastName("Last" + index)
+                .email("user" + index + "@abacox.com")
+                .phone("300" + String.format("%07d", index))
+                .password("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z2b1vWcY6fH3bT2q5e1dYc6a")
+                .dateOfBirth(LocalDate.of(1990, 1, 1).plusDays(index % 10000))
+                .role(Role.builder().id(UUID.randomUUID()).name("Admin").rolename("admin").build())
+                .build();
+    }
+
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(user(i));
+        }
+        return users;
+    }
+
+    static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
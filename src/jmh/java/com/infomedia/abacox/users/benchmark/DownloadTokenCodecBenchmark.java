@@ -0,0 +1,78 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.jwt.DownloadTokenCipher;
+import org.jasypt.util.binary.AES256BinaryEncryptor;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building blocks of download tokens by payload size: the URL-safe Base64 codec, and the legacy jasypt
+ * encryptor against the AES-GCM cipher with a precomputed key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DownloadTokenCodecBenchmark {
+
+    private static final byte[] AAD = "DL3_".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"128", "256", "512", "1024", "2048"})
+    public int payloadSize;
+
+    private byte[] payload;
+    private String base64;
+    private AES256BinaryEncryptor jasypt;
+    private DownloadTokenCipher cipher;
+    private byte[] jasyptEncrypted;
+    private byte[] gcmEncrypted;
+
+    @Setup
+    public void setup() {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+        base64 = Base64.getUrlEncoder().withoutPadding().encodeToString(payload);
+        jasypt = new AES256BinaryEncryptor();
+        jasypt.setPassword(BenchmarkFixtures.ENCRYPTION_KEY);
+        cipher = new DownloadTokenCipher(BenchmarkFixtures.ENCRYPTION_KEY);
+        jasyptEncrypted = jasypt.encrypt(payload);
+        gcmEncrypted = cipher.encrypt(payload, AAD);
+    }
+
+    @Benchmark
+    public String base64Encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload);
+    }
+
+    @Benchmark
+    public byte[] base64Decode() {
+        return Base64.getUrlDecoder().decode(base64);
+    }
+
+    @Benchmark
+    public byte[] jasyptEncrypt() {
+        return jasypt.encrypt(payload);
+    }
+
+    @Benchmark
+    public byte[] jasyptDecrypt() {
+        return jasypt.decrypt(jasyptEncrypted);
+    }
+
+    @Benchmark
+    public byte[] gcmEncrypt() {
+        return cipher.encrypt(payload, AAD);
+    }
+
+    @Benchmark
+    public byte[] gcmDecrypt() throws GeneralSecurityException {
+        return cipher.decrypt(gcmEncrypted, AAD);
+    }
+}
@@ -0,0 +1,40 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.export.excel.GenericExcelGenerator;
+import com.infomedia.abacox.users.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Excel export of users, as done by the export endpoints.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExcelExportBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private List<User> users;
+
+    @Setup
+    public void setup() {
+        users = BenchmarkFixtures.users(rows);
+    }
+
+    @Benchmark
+    public long generateExcel() throws IOException {
+        try (InputStream inputStream = GenericExcelGenerator.generateExcelInputStream(users, Set.of("password"))) {
+            return inputStream.readAllBytes().length;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.jwt.JwtManager;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation and validation for the three token modes. With cacheHits=false the verified-token
+ * cache holds a single entry and two tokens are validated alternately, so every validation pays for
+ * the full parse and signature check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtManagerBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cacheHits;
+
+    private JwtManager jwtManager;
+    private Map<String, Object> claims;
+    private String[] accessTokens;
+    private String[] downloadTokens;
+    private String[] refreshTokens;
+    private int next;
+
+    @Setup
+    public void setup() {
+        jwtManager = BenchmarkFixtures.jwtManager(cacheHits ? 50000 : 1);
+        claims = new HashMap<>();
+        claims.put("userId", UUID.randomUUID());
+        claims.put("username", "admin");
+        claims.put("roleId", UUID.randomUUID());
+        claims.put("rolename", "admin");
+        claims.put("loginId", UUID.randomUUID());
+        claims.put("epoch", 0L);
+        claims.put("sexp", System.currentTimeMillis() / 1000 + 43200);
+        accessTokens = new String[2];
+        downloadTokens = new String[2];
+        refreshTokens = new String[2];
+        for (int i = 0; i < 2; i++) {
+            accessTokens[i] = jwtManager.generateAccessToken(new HashMap<>(claims)).getToken();
+            downloadTokens[i] = jwtManager.generateDownloadToken(new HashMap<>(claims)).getToken();
+            refreshTokens[i] = jwtManager.generateRefreshToken(new HashMap<>(claims)).getToken();
+        }
+    }
+
+    private int nextIndex() {
+        return cacheHits ? 0 : (next++ & 1);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtManager.generateAccessToken(new HashMap<>(claims)).getToken();
+    }
+
+    @Benchmark
+    public String generateDownloadToken() {
+        return jwtManager.generateDownloadToken(new HashMap<>(claims)).getToken();
+    }
+
+    @Benchmark
+    public String generateRefreshToken() {
+        return jwtManager.generateRefreshToken(new HashMap<>(claims)).getToken();
+    }
+
+    @Benchmark
+    public Claims validateAccessToken() {
+        return jwtManager.validateAccessToken(accessTokens[nextIndex()]);
+    }
+
+    @Benchmark
+    public Claims validateDownloadToken() {
+        return jwtManager.validateDownloadToken(downloadTokens[nextIndex()]);
+    }
+
+    @Benchmark
+    public Claims validateRefreshToken() {
+        return jwtManager.validateRefreshToken(refreshTokens[nextIndex()]);
+    }
+}
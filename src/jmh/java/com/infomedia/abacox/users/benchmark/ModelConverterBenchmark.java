@@ -0,0 +1,34 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.modeltools.ModelConverter;
+import com.infomedia.abacox.users.dto.user.UserDto;
+import com.infomedia.abacox.users.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping, done for every user returned by the API and by token validation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelConverterBenchmark {
+
+    private ModelConverter modelConverter;
+    private User user;
+
+    @Setup
+    public void setup() {
+        modelConverter = new ModelConverter();
+        user = BenchmarkFixtures.user(1);
+    }
+
+    @Benchmark
+    public UserDto mapUserToDto() {
+        return modelConverter.map(user, UserDto.class);
+    }
+}
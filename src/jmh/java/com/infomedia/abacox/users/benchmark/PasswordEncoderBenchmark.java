@@ -0,0 +1,50 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.legacy.Md5PasswordEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password checks done on every login, with the encoders configured in SecurityConfig.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "S3cure-Passw0rd";
+
+    private Md5PasswordEncoder md5PasswordEncoder;
+    private BCryptPasswordEncoder bcryptPasswordEncoder;
+    private String md5Hash;
+    private String bcryptHash;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        md5PasswordEncoder = new Md5PasswordEncoder();
+        bcryptPasswordEncoder = new BCryptPasswordEncoder();
+        // Md5PasswordEncoder refuses to encode, legacy hashes are plain hex MD5
+        md5Hash = HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(PASSWORD.getBytes(StandardCharsets.UTF_8)));
+        bcryptHash = bcryptPasswordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean md5Matches() {
+        return md5PasswordEncoder.matches(PASSWORD, md5Hash);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean bcryptMatches() {
+        return bcryptPasswordEncoder.matches(PASSWORD, bcryptHash);
+    }
+}
@@ -0,0 +1,108 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.jwt.JwtManager;
+import com.infomedia.abacox.users.component.jwt.TokenDigest;
+import com.infomedia.abacox.users.component.modeltools.ModelConverter;
+import com.infomedia.abacox.users.component.session.store.InMemorySessionStore;
+import com.infomedia.abacox.users.dto.user.UserDto;
+import com.infomedia.abacox.users.entity.Login;
+import com.infomedia.abacox.users.entity.User;
+import com.infomedia.abacox.users.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process cost of a token refresh by number of live sessions: refresh token validation, session lookup
+ * by token digest, and generation of the new access and download tokens. Sessions are kept in the in-memory
+ * session store; with the JPA store the lookup is one indexed query on login.token_digest instead.
+ * With cacheHits=false the verified-token cache holds a single entry, so every refresh token is parsed and
+ * its signature checked.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RefreshBenchmark {
+
+    @Param({"1000", "100000"})
+    public int sessions;
+
+    @Param({"true", "false"})
+    public boolean cacheHits;
+
+    private JwtManager jwtManager;
+    private InMemorySessionStore store;
+    private ModelConverter modelConverter;
+    private String[] refreshTokens;
+    private int next;
+
+    @Setup
+    public void setup() {
+        jwtManager = BenchmarkFixtures.jwtManager(cacheHits ? sessions : 1);
+        modelConverter = new ModelConverter();
+        Map<UUID, User> users = new HashMap<>();
+        store = new InMemorySessionStore(userRepository(users), null, null);
+        BenchmarkFixtures.setField(store, "snapshotFile", "");
+        refreshTokens = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            User user = BenchmarkFixtures.user(i);
+            users.put(user.getId(), user);
+            Map<String, Object> claims = new HashMap<>();
+            claims.put("userId", user.getId());
+            claims.put("username", user.getUsername());
+            claims.put("roleId", user.getRole().getId());
+            claims.put("rolename", user.getRole().getRolename());
+            JwtManager.TokenInfo tokenInfo = jwtManager.generateRefreshToken(claims);
+            refreshTokens[i] = tokenInfo.getToken();
+            store.create(user.getId(), tokenInfo.getToken(), TokenDigest.of(tokenInfo.getToken()).toHex(),
+                    tokenInfo.getIssuedAt(), tokenInfo.getExpiration());
+        }
+    }
+
+    @Benchmark
+    public Object refresh() {
+        String token = refreshTokens[next];
+        next = (next + 1) % sessions;
+        Claims claims = jwtManager.validateRefreshToken(token);
+        Login login = store.findActiveByTokenDigest(TokenDigest.of(token).toHex(), LocalDateTime.now())
+                .orElseThrow();
+        User user = login.getUser();
+        if (!user.getUsername().equals(claims.get("username", String.class))) {
+            throw new IllegalStateException("Session of another user");
+        }
+        Map<String, Object> newClaims = new HashMap<>();
+        newClaims.put("userId", user.getId());
+        newClaims.put("username", user.getUsername());
+        newClaims.put("roleId", user.getRole().getId());
+        newClaims.put("rolename", user.getRole().getName());
+        newClaims.put("loginId", login.getId());
+        newClaims.put("epoch", 0L);
+        newClaims.put("sexp", login.getExpirationDate().atZone(ZoneId.systemDefault()).toEpochSecond());
+        return new Object[]{jwtManager.generateAccessToken(newClaims), jwtManager.generateDownloadToken(newClaims),
+                modelConverter.map(user, UserDto.class)};
+    }
+
+    /**
+     * UserRepository answering findById from the map, the only method the in-memory store calls on a refresh.
+     */
+    private static UserRepository userRepository(Map<UUID, User> users) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findById")) {
+                        return Optional.ofNullable(users.get((UUID) args[0]));
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,61 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.jwt.TokenDigest;
+import com.infomedia.abacox.users.component.session.store.InMemorySessionStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session validation against the in-memory session store by number of live sessions. The JPA store is
+ * measured by running the application against a database, its cost is one indexed query per lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionStoreBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"10000", "1000000"})
+    public int sessions;
+
+    private InMemorySessionStore store;
+    private UUID[] loginIds;
+    private List<UUID> batch;
+    private int next;
+
+    @Setup
+    public void setup() {
+        store = new InMemorySessionStore(null, null, null);
+        BenchmarkFixtures.setField(store, "snapshotFile", "");
+        LocalDateTime now = LocalDateTime.now();
+        loginIds = new UUID[sessions];
+        for (int i = 0; i < sessions; i++) {
+            String token = "token-" + i;
+            loginIds[i] = store.create(UUID.randomUUID(), token, TokenDigest.of(token).toHex(), now,
+                    now.plusHours(12)).getId();
+        }
+        batch = Arrays.asList(Arrays.copyOf(loginIds, BATCH_SIZE));
+    }
+
+    @Benchmark
+    public Optional<LocalDateTime> findValidExpiration() {
+        next = (next + 1) % sessions;
+        return store.findValidExpiration(loginIds[next], LocalDateTime.now());
+    }
+
+    @Benchmark
+    public Map<UUID, LocalDateTime> findValidExpirationsBatch() {
+        return store.findValidExpirations(batch, LocalDateTime.now());
+    }
+}
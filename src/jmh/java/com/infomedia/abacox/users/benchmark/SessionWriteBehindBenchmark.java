@@ -0,0 +1,117 @@
+package com.infomedia.abacox.users.benchmark;
+
+import com.infomedia.abacox.users.component.jwt.TokenDigest;
+import com.infomedia.abacox.users.component.session.SessionWriteBehind;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Login row persistence against a real database: one insert and commit per login (the synchronous path)
+ * against queuing the row in {@link SessionWriteBehind} with a background flush every 200ms.
+ *
+ * Needs a PostgreSQL with the application schema and the system user. The connection is read from the
+ * BENCHMARK_JDBC_URL, BENCHMARK_JDBC_USERNAME and BENCHMARK_JDBC_PASSWORD environment variables, defaulting
+ * to the values in application.properties. Rows written by the benchmark are deleted on teardown.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class SessionWriteBehindBenchmark {
+
+    private static final String TOKEN_PREFIX = "benchmark-session-";
+    private static final String INSERT_SQL = """
+            insert into login (id, user_id, token, token_digest, login_date, expiration_date)
+            values (?, ?, ?, ?, ?, ?)""";
+    private static final String INSERT_ACTIVE_SQL = """
+            insert into active_session (id, user_id, login_date, expiration_date) values (?, ?, ?, ?)""";
+
+    private final AtomicLong sequence = new AtomicLong();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private SessionWriteBehind writeBehind;
+    private ScheduledExecutorService flusher;
+    private UUID userId;
+
+    @Setup
+    public void setup() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                env("BENCHMARK_JDBC_URL", "jdbc:postgresql://localhost:5432/abacox-users"),
+                env("BENCHMARK_JDBC_USERNAME", "postgres"),
+                env("BENCHMARK_JDBC_PASSWORD", "betax964566"));
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        userId = jdbcTemplate.queryForObject("select id from users where username = 'system'", UUID.class);
+
+        writeBehind = new SessionWriteBehind(jdbcTemplate, transactionManager);
+        BenchmarkFixtures.setField(writeBehind, "enabled", true);
+        BenchmarkFixtures.setField(writeBehind, "maxPending", 10000);
+        BenchmarkFixtures.setField(writeBehind, "batchSize", 500);
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(writeBehind::flush, 200, 200, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        flusher.shutdown();
+        writeBehind.shutdown();
+        jdbcTemplate.update("delete from active_session where id in (select id from login where token like ?)",
+                TOKEN_PREFIX + "%");
+        jdbcTemplate.update("delete from login where token like ?", TOKEN_PREFIX + "%");
+    }
+
+    @Benchmark
+    public UUID synchronousInsert() {
+        SessionWriteBehind.PendingLogin login = nextLogin();
+        insert(login);
+        return login.id();
+    }
+
+    @Benchmark
+    public UUID writeBehind() {
+        SessionWriteBehind.PendingLogin login = nextLogin();
+        if (!writeBehind.enqueue(login)) {
+            // Queue full, same fallback as LoginService.queueSession
+            insert(login);
+        }
+        return login.id();
+    }
+
+    private void insert(SessionWriteBehind.PendingLogin login) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(INSERT_SQL, args(login));
+            jdbcTemplate.update(INSERT_ACTIVE_SQL, login.id(), login.userId(), login.loginDate(), login.expirationDate());
+        });
+    }
+
+    private SessionWriteBehind.PendingLogin nextLogin() {
+        String token = TOKEN_PREFIX + sequence.incrementAndGet() + "-" + UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        return new SessionWriteBehind.PendingLogin(UUID.randomUUID(), userId, token, TokenDigest.of(token).toHex(),
+                now, now.plusHours(12));
+    }
+
+    private static Object[] args(SessionWriteBehind.PendingLogin login) {
+        return new Object[]{login.id(), login.userId(), login.token(), login.tokenDigest(),
+                login.loginDate(), login.expirationDate()};
+    }
+
+    private static String env(String name, String defaultValue) {
+        return Objects.requireNonNullElse(System.getenv(name), defaultValue);
+    }
+}
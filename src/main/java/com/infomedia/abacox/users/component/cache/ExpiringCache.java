@@ -0,0 +1,153 @@
+package com.infomedia.abacox.users.component.cache;
+
+import com.infomedia.abacox.users.dto.metrics.CacheStatsDto;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small, thread-safe, size-bounded cache where every entry carries its own expiration instant.
+ *
+ * Entries are never returned after their expiration time. When the cache reaches its maximum size,
+ * expired entries are purged first and, if that is not enough, an arbitrary slice of the remaining
+ * entries is evicted. Hit, miss and eviction counters are kept with LongAdder so that recording them
+ * does not become a contention point on hot paths.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ExpiringCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAt) {
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpiringCache(String name, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache max size must be positive");
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached value for the key, or null if it is absent or expired.
+     */
+    public V get(K key, long now) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(now)) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    /**
+     * Stores the value, replacing any previous entry for the key.
+     */
+    public void put(K key, V value, long expiresAt, long now) {
+        if (expiresAt <= now) {
+            entries.remove(key);
+            return;
+        }
+        ensureCapacity(now);
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    /**
+     * Stores the value only if there is no live entry for the key.
+     * Expired entries are treated as absent.
+     *
+     * @return true if the value was stored
+     */
+    public boolean putIfAbsent(K key, V value, long expiresAt, long now) {
+        if (expiresAt <= now) {
+            return false;
+        }
+        ensureCapacity(now);
+        Entry<V> newEntry = new Entry<>(value, expiresAt);
+        Entry<V> result = entries.compute(key, (k, current) ->
+                current == null || current.isExpired(now) ? newEntry : current);
+        return result == newEntry;
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes every expired entry.
+     *
+     * @return the number of entries removed
+     */
+    public int purgeExpired(long now) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().isExpired(now)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void ensureCapacity(long now) {
+        if (entries.size() < maxSize) {
+            return;
+        }
+        evictions.add(purgeExpired(now));
+        if (entries.size() < maxSize) {
+            return;
+        }
+        // Still full: drop roughly a tenth of the entries so we don't pay this cost on every put.
+        int toEvict = Math.max(1, maxSize / 10);
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (toEvict > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+            toEvict--;
+        }
+    }
+
+    public CacheStatsDto getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return CacheStatsDto.builder()
+                .name(name)
+                .size(entries.size())
+                .maxSize(maxSize)
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRate(total == 0 ? 0.0 : (double) hitCount / total)
+                .evictions(evictions.sum())
+                .build();
+    }
+}
@@ -14,7 +14,18 @@ public enum ConfigKey {
 
     // PUBLIC KEYS
     SINGLE_SESSION("false", true),
-    SESSION_MAX_AGE("86400", true);
+    SESSION_MAX_AGE("86400", true),
+    SESSION_IDLE_TIMEOUT("0", true),
+    LOGIN_RETENTION_DAYS("90", true),
+    LOGIN_THROTTLE_WINDOW("300", true),
+    LOGIN_MAX_ATTEMPTS_PER_IP("100", true),
+    LOGIN_MAX_FAILURES_PER_USERNAME("10", true),
+
+    // PRIVATE KEYS
+    // Set once the one-time copy of open logins into active_session has run
+    ACTIVE_SESSION_BACKFILL_DONE("false", false),
+    // Set once every login created before login.token_digest existed has its digest
+    TOKEN_DIGEST_BACKFILL_DONE("false", false);
 
     private final String defaultValue;
     private final boolean isPublic;
@@ -0,0 +1,121 @@
+package com.infomedia.abacox.users.component.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces id-based events (revoked sessions, deactivated users, role changes) and sends them through
+ * {@link EventsWebSocketServer} in small batches, one message per event type and time window.
+ *
+ * Ids are only queued once the surrounding transaction commits, so listeners never hear about a change
+ * that was rolled back. Duplicate ids within a window are sent once.
+ *
+ * Batches that can't be sent (no WebSocket session, or the send failed) are queued again and retried on the
+ * next window, up to events.broadcast.max-pending ids per event type; beyond that the oldest ids are dropped
+ * and a warning is logged. A consumer that was disconnected long enough to lose events must resync the
+ * affected sessions and users from the API when it reconnects.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class EventBroadcaster {
+
+    private final EventsWebSocketServer eventsWebSocketServer;
+    private final ObjectMapper objectMapper;
+
+    @Value("${events.broadcast.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${events.broadcast.max-pending:10000}")
+    private int maxPending;
+
+    private final Map<EventType, Set<UUID>> pending = new ConcurrentHashMap<>();
+
+    public void publishAfterCommit(EventType eventType, UUID id) {
+        publishAfterCommit(eventType, List.of(id));
+    }
+
+    public void publishAfterCommit(EventType eventType, Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<UUID> copy = List.copyOf(ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(eventType, copy);
+                }
+            });
+        } else {
+            enqueue(eventType, ids);
+        }
+    }
+
+    private void enqueue(EventType eventType, Collection<UUID> ids) {
+        // Mutating inside compute keeps additions atomic with the removal done by flush
+        pending.compute(eventType, (type, set) -> {
+            Set<UUID> result = set == null ? new LinkedHashSet<>() : set;
+            result.addAll(ids);
+            return result;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${events.broadcast.window-ms:500}")
+    public void flush() {
+        for (EventType eventType : EventType.values()) {
+            Set<UUID> ids = pending.remove(eventType);
+            if (ids == null) {
+                continue;
+            }
+            List<UUID> list = new ArrayList<>(ids);
+            for (int from = 0; from < list.size(); from += maxBatchSize) {
+                List<UUID> batch = list.subList(from, Math.min(from + maxBatchSize, list.size()));
+                boolean sent;
+                try {
+                    sent = eventsWebSocketServer.sendEventMessage(eventType, objectMapper.writeValueAsString(batch));
+                } catch (JsonProcessingException e) {
+                    log.error("Could not serialize {} event", eventType, e);
+                    continue;
+                }
+                if (!sent) {
+                    requeue(eventType, list.subList(from, list.size()));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts unsent ids back ahead of the ones queued meanwhile, keeping at most maxPending of the newest.
+     */
+    private void requeue(EventType eventType, List<UUID> unsent) {
+        int[] dropped = new int[1];
+        pending.compute(eventType, (type, set) -> {
+            Set<UUID> result = new LinkedHashSet<>(unsent);
+            if (set != null) {
+                result.addAll(set);
+            }
+            Iterator<UUID> oldest = result.iterator();
+            while (result.size() > maxPending) {
+                oldest.next();
+                oldest.remove();
+                dropped[0]++;
+            }
+            return result;
+        });
+        if (dropped[0] > 0) {
+            log.warn("Dropped {} unsent {} events, over the limit of {} pending", dropped[0], eventType, maxPending);
+        }
+    }
+}
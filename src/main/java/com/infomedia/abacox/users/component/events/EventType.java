@@ -1,5 +1,11 @@
 package com.infomedia.abacox.users.component.events;
 
 public enum EventType {
-    TEST
+    TEST,
+    // content is a JSON array with the ids of the closed logins
+    SESSION_REVOKED,
+    // content is a JSON array with the ids of the deactivated users
+    USER_DEACTIVATED,
+    // content is a JSON array with the ids of the users whose role changed
+    ROLE_CHANGED
 }
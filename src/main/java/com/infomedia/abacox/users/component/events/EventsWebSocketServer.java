@@ -12,6 +12,7 @@ import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
@@ -38,18 +39,26 @@ public class EventsWebSocketServer extends TextWebSocketHandler implements WebSo
         registry.addHandler(this, "/websocket/module").setAllowedOrigins("*");
     }
 
-    private WebSocketSession session = null;
+    private volatile WebSocketSession session = null;
+
+    private static final int SEND_TIME_LIMIT_MS = 10000;
+    private static final int SEND_BUFFER_SIZE_LIMIT = 512 * 1024;
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         log.info("Connected " + session.getRemoteAddress());
-        this.session = session;
+        // Events are sent from scheduler threads while commands are sent from request threads
+        this.session = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_SIZE_LIMIT);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         log.info("Disconnected " + session.getRemoteAddress());
-        this.session = null;
+        // Only forget the session if it is the current one, a reconnection may already have replaced it
+        WebSocketSession current = this.session;
+        if (current != null && current.getId().equals(session.getId())) {
+            this.session = null;
+        }
     }
 
     private final Map<UUID, CompletableFuture<CommandResponseMessage>> pendingRequests = new ConcurrentHashMap<>();
@@ -86,12 +95,22 @@ public class EventsWebSocketServer extends TextWebSocketHandler implements WebSo
         log.error("Error occurred on " + session.getRemoteAddress() + ": " + exception.getMessage(), exception);
     }
 
-    public void sendEventMessage(EventType eventType, String content) {
+    /**
+     * @return false if there is no open session to send the event to
+     */
+    public boolean sendEventMessage(EventType eventType, String content) {
+        WebSocketSession session = this.session;
+        if (session == null || !session.isOpen()) {
+            log.debug("No WebSocket session, {} event not sent", eventType);
+            return false;
+        }
         try {
             WSMessage message = new EventMessage(source, eventType, content);
             session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+            return true;
         } catch (IOException e) {
             log.error("Error occurred while sending message to " + session.getRemoteAddress() + ": " + e.getMessage(), e);
+            return false;
         }
     }
 
@@ -0,0 +1,81 @@
+package com.infomedia.abacox.users.component.jwt;
+
+import lombok.NonNull;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * AES-256-GCM encryption for download tokens.
+ *
+ * The key is derived from auth.jwt.encryption-key once, when the cipher is created, instead of on every
+ * call as jasypt's password based encryptor does. Every node derives the same key from the same password.
+ * Output layout is nonce (12 bytes) followed by ciphertext and tag; callers bind their token prefix as
+ * associated data so a payload can't be replayed under another format version.
+ */
+public class DownloadTokenCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final byte[] KDF_SALT = "abacox-users/download-token/v2".getBytes(StandardCharsets.UTF_8);
+    private static final int KDF_ITERATIONS = 210_000;
+    private static final int KEY_LENGTH_BITS = 256;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(TRANSFORMATION + " not available", e);
+        }
+    });
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    public DownloadTokenCipher(@NonNull String password) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), KDF_SALT, KDF_ITERATIONS, KEY_LENGTH_BITS);
+            byte[] keyBytes = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            spec.clearPassword();
+            this.key = new SecretKeySpec(keyBytes, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not derive download token key", e);
+        }
+    }
+
+    public byte[] encrypt(byte[] plaintext, byte[] associatedData) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, nonce));
+            cipher.updateAAD(associatedData);
+            byte[] output = Arrays.copyOf(nonce, NONCE_LENGTH + cipher.getOutputSize(plaintext.length));
+            cipher.doFinal(plaintext, 0, plaintext.length, output, NONCE_LENGTH);
+            return output;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt download token", e);
+        }
+    }
+
+    /**
+     * @throws GeneralSecurityException if the payload is malformed or was not produced with this key
+     */
+    public byte[] decrypt(byte[] payload, byte[] associatedData) throws GeneralSecurityException {
+        if (payload.length < NONCE_LENGTH + TAG_LENGTH_BITS / 8) {
+            throw new GeneralSecurityException("Payload too short");
+        }
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 0, NONCE_LENGTH));
+        cipher.updateAAD(associatedData);
+        return cipher.doFinal(payload, NONCE_LENGTH, payload.length - NONCE_LENGTH);
+    }
+}
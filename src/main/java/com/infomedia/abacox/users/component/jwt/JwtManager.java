@@ -1,5 +1,7 @@
 package com.infomedia.abacox.users.component.jwt;
 
+import com.infomedia.abacox.users.component.cache.ExpiringCache;
+import com.infomedia.abacox.users.dto.metrics.CacheStatsDto;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -7,15 +9,21 @@ import lombok.*;
 import lombok.extern.log4j.Log4j2;
 import org.jasypt.util.binary.AES256BinaryEncryptor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
 
 @Component
 @Log4j2
@@ -45,15 +53,92 @@ public class JwtManager {
     @Value("${abacox.client-name}")
     private String clientName;
 
+    @Value("${auth.jwt.token-cache.max-size:50000}")
+    private int tokenCacheMaxSize;
+
+    @Getter
+    @Value("${auth.jwt.signing-algorithm:HS256}")
+    private SigningAlgorithm signingAlgorithm;
+
+    @Value("${auth.jwt.key-rotation-days:30}")
+    private long keyRotationDays;
+
+    private final SigningKeyStore signingKeyStore;
+
+    // JwtParser instances are immutable and thread-safe, all modes are verified with the same key locator
+    private JwtParser parser;
+
+    // Verified tokens keyed by the SHA-256 of the presented token, each entry lives until the token's exp
+    private ExpiringCache<TokenDigest, VerifiedToken> verifiedTokenCache;
+
     private static final String MSG_INVALID_TOKEN_TYPE = "Invalid token type";
     private static final String MSG_INVALID_TOKEN_FORMAT = "Invalid token format";
     private static final String MSG_INVALID_TOKEN = "Invalid token";
-    private static final String DOWNLOAD_TOKEN_PREFIX = "DL_";
+    // Legacy download tokens: Base58 of a jasypt (PBE, key derived on every call) encrypted JWT
+    private static final String LEGACY_DOWNLOAD_TOKEN_PREFIX = "DL_";
+    // URL-safe Base64 (linear time, unlike Base58) of an AES-GCM encrypted JWT, key derived once at startup
+    private static final String DOWNLOAD_TOKEN_PREFIX = "DL3_";
+    private static final byte[] DOWNLOAD_TOKEN_AAD = DOWNLOAD_TOKEN_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
+
+    // Accept DL_ tokens issued before the upgrade; they live auth.jwt.download-token-duration at most
+    @Value("${auth.jwt.legacy-download-tokens:true}")
+    private boolean acceptLegacyDownloadTokens;
+
+    // In asymmetric mode, accept tokens without kid, signed with the shared secret before the switch
+    @Value("${auth.jwt.accept-legacy-hmac:false}")
+    private boolean acceptLegacyHmac;
+
+    private DownloadTokenCipher downloadTokenCipher;
+
+    public JwtManager(SigningKeyStore signingKeyStore) {
+        this.signingKeyStore = signingKeyStore;
+    }
 
     @PostConstruct
     private void init() {
         secret = Keys.hmacShaKeyFor(secretString.getBytes(StandardCharsets.UTF_8));
         encryptor.setPassword(encryptionKey);
+        downloadTokenCipher = new DownloadTokenCipher(encryptionKey);
+        if (signingAlgorithm.isAsymmetric()) {
+            signingKeyStore.reload(signingAlgorithm);
+            if (signingKeyStore.getActiveKey() == null) {
+                signingKeyStore.rotate(signingAlgorithm);
+                signingKeyStore.reload(signingAlgorithm);
+            }
+            // Tokens without kid were signed with the shared secret before switching, only accepted when enabled
+            parser = Jwts.parser().keyLocator(new LocatorAdapter<Key>() {
+                @Override
+                protected Key locate(JwsHeader header) {
+                    if (header.getKeyId() == null) {
+                        if (!acceptLegacyHmac) {
+                            throw new InvalidJwtTokenException(MSG_INVALID_TOKEN);
+                        }
+                        return secret;
+                    }
+                    Key key = signingKeyStore.findPublicKey(header.getKeyId(), signingAlgorithm);
+                    if (key == null) {
+                        throw new InvalidJwtTokenException(MSG_INVALID_TOKEN);
+                    }
+                    return key;
+                }
+            }).build();
+        } else {
+            parser = Jwts.parser().verifyWith(secret).build();
+        }
+        verifiedTokenCache = new ExpiringCache<>("verifiedTokens", tokenCacheMaxSize);
+    }
+
+    /**
+     * Signs with the shared secret, or with the active key pair (adding its kid) in asymmetric mode.
+     */
+    private JwtBuilder sign(JwtBuilder builder) {
+        if (!signingAlgorithm.isAsymmetric()) {
+            return builder.signWith(secret);
+        }
+        SigningKeyStore.ActiveKey activeKey = signingKeyStore.getActiveKey();
+        return builder.header().keyId(activeKey.kid()).and().signWith(activeKey.privateKey());
     }
 
     public TokenInfo generateAccessToken(Map<String, Object> claims) {
@@ -61,7 +146,7 @@ public class JwtManager {
         LocalDateTime nowLdt = LocalDateTime.now();
         Date now = Timestamp.valueOf(nowLdt);
         Date expiration = Timestamp.valueOf(nowLdt.plusSeconds(accessTokenDurationSec));
-        return new TokenInfo(Jwts.builder()
+        return new TokenInfo(sign(Jwts.builder()
                 .claims(claims).header()
                 .add("typ", "JWT")
                 .add("mod", Mode.ACCESS.name())
@@ -69,8 +154,7 @@ public class JwtManager {
                 .claim("clt", clientName)
                 .expiration(expiration)
                 .notBefore(now)
-                .issuedAt(now)
-                .signWith(secret)
+                .issuedAt(now))
                 .compact(), accessTokenDurationSec, nowLdt, nowLdt.plusSeconds(accessTokenDurationSec));
     }
 
@@ -80,7 +164,7 @@ public class JwtManager {
         LocalDateTime nowLdt = LocalDateTime.now();
         Date now = Timestamp.valueOf(nowLdt);
         Date expiration = Timestamp.valueOf(nowLdt.plusSeconds(downloadTokenDuration));
-        return new TokenInfo(DOWNLOAD_TOKEN_PREFIX+Base58.encode(encryptor.encrypt(Jwts.builder()
+        return new TokenInfo(DOWNLOAD_TOKEN_PREFIX+BASE64_ENCODER.encodeToString(downloadTokenCipher.encrypt(sign(Jwts.builder()
                 .claims(claims).header()
                 .add("typ", "JWT")
                 .add("mod", Mode.DOWNLOAD.name())
@@ -89,11 +173,10 @@ public class JwtManager {
                 .claim("clt", clientName)
                 .expiration(expiration)
                 .notBefore(now)
-                .issuedAt(now)
-                .signWith(secret)
+                .issuedAt(now))
                 .compressWith(Jwts.ZIP.DEF)
                 .compact()
-                .getBytes(StandardCharsets.UTF_8))), downloadTokenDuration, nowLdt, nowLdt.plusSeconds(downloadTokenDuration));
+                .getBytes(StandardCharsets.UTF_8), DOWNLOAD_TOKEN_AAD)), downloadTokenDuration, nowLdt, nowLdt.plusSeconds(downloadTokenDuration));
     }
 
     public TokenInfo generateRefreshToken(Map<String, Object> claims) {
@@ -101,27 +184,54 @@ public class JwtManager {
         LocalDateTime nowLdt = LocalDateTime.now();
         Date now = Timestamp.valueOf(nowLdt);
         Date expiration = Timestamp.valueOf(nowLdt.plusSeconds(refreshTokenDurationSec));
-        return new TokenInfo(Jwts.builder()
+        return new TokenInfo(sign(Jwts.builder()
                 .claims(claims).header()
                 .add("typ", "JWT")
                 .add("mod", Mode.REFRESH.name())
                 .and()
+                // unique id so two logins in the same second never produce the same token (and digest)
+                .id(UUID.randomUUID().toString())
                 .claim("clt", clientName)
                 .expiration(expiration)
                 .notBefore(now)
-                .issuedAt(now)
-                .signWith(secret)
+                .issuedAt(now))
                 .compact(), refreshTokenDurationSec, nowLdt, nowLdt.plusSeconds(refreshTokenDurationSec));
     }
 
     public Claims validateAccessToken(@NonNull String accessToken) {
-        Jws<Claims> jwt = Jwts.parser().verifyWith(secret).build().parseSignedClaims(accessToken);
+        return validate(accessToken, Mode.ACCESS, UnaryOperator.identity());
+    }
+
+    /**
+     * Verifies a token of the expected mode, serving repeated presentations of the same token from
+     * the verified-token cache until the token expires.
+     *
+     * @param token the token exactly as presented by the client
+     * @param expectedMode the mode the token must have been issued for
+     * @param unwrapper turns the presented token into the signed JWT, only invoked on a cache miss
+     */
+    private Claims validate(String token, Mode expectedMode, UnaryOperator<String> unwrapper) {
+        TokenDigest digest = TokenDigest.of(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verifiedTokenCache.get(digest, now);
+        if (cached != null) {
+            if (cached.mode() != expectedMode) {
+                throw new InvalidJwtTokenException(MSG_INVALID_TOKEN_TYPE);
+            }
+            return cached.claims();
+        }
+
+        Jws<Claims> jwt = parser.parseSignedClaims(unwrapper.apply(token));
         String mode = (String) jwt.getHeader().get("mod");
-        if (mode == null || !mode.equals(Mode.ACCESS.name())) {
+        if (mode == null || !mode.equals(expectedMode.name())) {
             throw new InvalidJwtTokenException(MSG_INVALID_TOKEN_TYPE);
         }
-        validateClient(jwt.getPayload());
-        return jwt.getPayload();
+        Claims claims = jwt.getPayload();
+        validateClient(claims);
+        if (claims.getExpiration() != null) {
+            verifiedTokenCache.put(digest, new VerifiedToken(claims, expectedMode), claims.getExpiration().getTime(), now);
+        }
+        return claims;
     }
 
     private void validateClient(Claims claims){
@@ -132,41 +242,83 @@ public class JwtManager {
     }
 
     public Claims validateDownloadToken(@NonNull String downloadToken) {
-        String tokenWithoutPrefix;
         if (downloadToken.startsWith(DOWNLOAD_TOKEN_PREFIX)) {
-            tokenWithoutPrefix = downloadToken.substring(DOWNLOAD_TOKEN_PREFIX.length());
-        } else {
-            throw new InvalidJwtTokenException(MSG_INVALID_TOKEN_FORMAT);
+            return validate(downloadToken, Mode.DOWNLOAD, this::decryptDownloadToken);
+        }
+        if (acceptLegacyDownloadTokens && downloadToken.startsWith(LEGACY_DOWNLOAD_TOKEN_PREFIX)) {
+            return validate(downloadToken, Mode.DOWNLOAD, this::decryptLegacyDownloadToken);
         }
-        String jwtToken;
+        throw new InvalidJwtTokenException(MSG_INVALID_TOKEN_FORMAT);
+    }
+
+    private String decryptDownloadToken(String downloadToken) {
+        String tokenWithoutPrefix = downloadToken.substring(DOWNLOAD_TOKEN_PREFIX.length());
         try {
-            jwtToken = new String(encryptor.decrypt(Base58.decode(tokenWithoutPrefix)), StandardCharsets.UTF_8);
+            return new String(downloadTokenCipher.decrypt(BASE64_DECODER.decode(tokenWithoutPrefix), DOWNLOAD_TOKEN_AAD),
+                    StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new InvalidJwtTokenException(MSG_INVALID_TOKEN_FORMAT);
         }
-        Jws<Claims> jwt = Jwts.parser().verifyWith(secret).build().parseSignedClaims(jwtToken);
-        String mode = (String) jwt.getHeader().get("mod");
-        if (mode == null || !mode.equals(Mode.DOWNLOAD.name())) {
-            throw new InvalidJwtTokenException(MSG_INVALID_TOKEN_TYPE);
+    }
+
+    private String decryptLegacyDownloadToken(String downloadToken) {
+        String tokenWithoutPrefix = downloadToken.substring(LEGACY_DOWNLOAD_TOKEN_PREFIX.length());
+        try {
+            return new String(encryptor.decrypt(Base58.decode(tokenWithoutPrefix)), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new InvalidJwtTokenException(MSG_INVALID_TOKEN_FORMAT);
         }
-        validateClient(jwt.getPayload());
-        return jwt.getPayload();
     }
 
     public Claims validateRefreshToken(@NonNull String jwtToken) {
-        Jws<Claims> jwt = Jwts.parser().verifyWith(secret).build().parseSignedClaims(jwtToken);
-        String mode = (String) jwt.getHeader().get("mod");
-        if (mode == null || !mode.equals(Mode.REFRESH.name())) {
-            throw new InvalidJwtTokenException(MSG_INVALID_TOKEN_TYPE);
+        return validate(jwtToken, Mode.REFRESH, UnaryOperator.identity());
+    }
+
+    public CacheStatsDto getVerifiedTokenCacheStats() {
+        return verifiedTokenCache.getStats();
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void purgeExpiredTokens() {
+        verifiedTokenCache.purgeExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the public signing keys as a JSON Web Key Set, empty when signing with the shared secret
+     */
+    public Map<String, Object> getJwks() {
+        return signingAlgorithm.isAsymmetric() ? signingKeyStore.getJwks() : Map.of("keys", List.of());
+    }
+
+    /**
+     * Picks up keys rotated by other nodes, rotates the active key once it is older than
+     * auth.jwt.key-rotation-days and drops retired keys no unexpired token can be signed with.
+     */
+    @Scheduled(fixedRate = 60000, initialDelay = 60000)
+    public void maintainSigningKeys() {
+        if (!signingAlgorithm.isAsymmetric()) {
+            return;
+        }
+        signingKeyStore.reload(signingAlgorithm);
+        LocalDateTime now = LocalDateTime.now();
+        SigningKeyStore.ActiveKey activeKey = signingKeyStore.getActiveKey();
+        if (activeKey == null || activeKey.createdDate().isBefore(now.minusDays(keyRotationDays))) {
+            signingKeyStore.rotate(signingAlgorithm);
+            signingKeyStore.reload(signingAlgorithm);
+        }
+        long maxTokenLifetimeSec = Math.max(refreshTokenDurationSec, Math.max(accessTokenDurationSec, downloadTokenDuration));
+        if (signingKeyStore.purgeRetired(now.minusSeconds(maxTokenLifetimeSec)) > 0) {
+            signingKeyStore.reload(signingAlgorithm);
         }
-        validateClient(jwt.getPayload());
-        return jwt.getPayload();
     }
 
     public enum Mode {
         ACCESS, REFRESH, DOWNLOAD
     }
 
+    private record VerifiedToken(Claims claims, Mode mode) {
+    }
+
     @Data
     @Builder
     @NoArgsConstructor
@@ -0,0 +1,39 @@
+package com.infomedia.abacox.users.component.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+
+import java.security.KeyPair;
+
+/**
+ * Token signing algorithms. HS256 signs with the shared auth.jwt.secret, the asymmetric ones sign with
+ * rotating key pairs whose public halves are published as a JWKS.
+ */
+public enum SigningAlgorithm {
+    HS256(null),
+    ES256("EC"),
+    EdDSA("Ed25519");
+
+    private final String keyFactoryAlgorithm;
+
+    SigningAlgorithm(String keyFactoryAlgorithm) {
+        this.keyFactoryAlgorithm = keyFactoryAlgorithm;
+    }
+
+    public boolean isAsymmetric() {
+        return keyFactoryAlgorithm != null;
+    }
+
+    public String getKeyFactoryAlgorithm() {
+        return keyFactoryAlgorithm;
+    }
+
+    public KeyPair generateKeyPair() {
+        return switch (this) {
+            case ES256 -> Jwts.SIG.ES256.keyPair().build();
+            // Ed25519 explicitly, the EdDSA default would be Ed448
+            case EdDSA -> Jwks.CRV.Ed25519.keyPair().build();
+            case HS256 -> throw new UnsupportedOperationException("HS256 does not use key pairs");
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package com.infomedia.abacox.users.component.jwt;
+
+import com.infomedia.abacox.users.entity.SigningKey;
+import com.infomedia.abacox.users.repository.SigningKeyRepository;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.Jwks;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.jasypt.util.binary.AES256BinaryEncryptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Keeps the asymmetric signing keys shared by every node through the signing_key table.
+ *
+ * The newest non-retired key of the configured algorithm signs new tokens. Retired keys keep
+ * verifying (and stay in the JWKS) until they are purged, which happens once every token they
+ * could have signed has expired. Keys are looked up in memory; an unknown kid (a key created by
+ * another node since the last reload) triggers a reload, at most once every few seconds.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class SigningKeyStore {
+
+    private static final long MISS_RELOAD_INTERVAL_MS = 5000;
+
+    private final SigningKeyRepository signingKeyRepository;
+
+    @Value("${auth.jwt.encryption-key}")
+    private String encryptionKey;
+
+    private final AES256BinaryEncryptor encryptor = new AES256BinaryEncryptor();
+
+    private volatile KeySnapshot snapshot = new KeySnapshot(null, Map.of(), List.of());
+    private volatile long lastReload;
+
+    public record ActiveKey(String kid, PrivateKey privateKey, LocalDateTime createdDate) {
+    }
+
+    private record KeySnapshot(ActiveKey activeKey, Map<String, PublicKey> publicKeys, List<Jwk<?>> jwks) {
+    }
+
+    @PostConstruct
+    public void init() {
+        encryptor.setPassword(encryptionKey);
+    }
+
+    /**
+     * Loads every stored key, selecting the newest non-retired key of the algorithm as the active one.
+     */
+    public synchronized void reload(SigningAlgorithm algorithm) {
+        ActiveKey activeKey = null;
+        Map<String, PublicKey> publicKeys = new HashMap<>();
+        List<Jwk<?>> jwks = new ArrayList<>();
+        for (SigningKey signingKey : signingKeyRepository.findAllByOrderByCreatedDateDesc()) {
+            try {
+                SigningAlgorithm keyAlgorithm = SigningAlgorithm.valueOf(signingKey.getAlgorithm());
+                KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm.getKeyFactoryAlgorithm());
+                PublicKey publicKey = keyFactory.generatePublic(
+                        new X509EncodedKeySpec(Base64.getDecoder().decode(signingKey.getPublicKey())));
+                publicKeys.put(signingKey.getKid(), publicKey);
+                jwks.add(Jwks.builder().key(publicKey)
+                        .id(signingKey.getKid())
+                        .algorithm(keyAlgorithm.name())
+                        .publicKeyUse("sig")
+                        .build());
+                if (activeKey == null && keyAlgorithm == algorithm && signingKey.getRetiredDate() == null) {
+                    PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(
+                            encryptor.decrypt(Base64.getDecoder().decode(signingKey.getPrivateKey()))));
+                    activeKey = new ActiveKey(signingKey.getKid(), privateKey, signingKey.getCreatedDate());
+                }
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                log.error("Could not load signing key {}", signingKey.getKid(), e);
+            }
+        }
+        snapshot = new KeySnapshot(activeKey, Map.copyOf(publicKeys), List.copyOf(jwks));
+        lastReload = System.currentTimeMillis();
+    }
+
+    /**
+     * Retires the current keys and creates a new active key for the algorithm.
+     */
+    @Transactional
+    public void rotate(SigningAlgorithm algorithm) {
+        LocalDateTime now = LocalDateTime.now();
+        KeyPair keyPair = algorithm.generateKeyPair();
+        signingKeyRepository.retireActiveKeys(now);
+        signingKeyRepository.save(SigningKey.builder()
+                .kid(UUID.randomUUID().toString())
+                .algorithm(algorithm.name())
+                .publicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()))
+                .privateKey(Base64.getEncoder().encodeToString(encryptor.encrypt(keyPair.getPrivate().getEncoded())))
+                .createdDate(now)
+                .build());
+        log.info("Rotated {} signing key", algorithm);
+    }
+
+    /**
+     * Deletes keys retired before the cutoff, no token signed by them can still be valid.
+     */
+    @Transactional
+    public int purgeRetired(LocalDateTime cutoff) {
+        return signingKeyRepository.deleteRetiredBefore(cutoff);
+    }
+
+    /**
+     * @return the key new tokens are signed with, or null if there is none for the configured algorithm
+     */
+    public ActiveKey getActiveKey() {
+        return snapshot.activeKey();
+    }
+
+    /**
+     * @return the public key with the given kid, or null if it is unknown
+     */
+    public PublicKey findPublicKey(String kid, SigningAlgorithm algorithm) {
+        PublicKey publicKey = snapshot.publicKeys().get(kid);
+        if (publicKey == null && System.currentTimeMillis() - lastReload > MISS_RELOAD_INTERVAL_MS) {
+            reload(algorithm);
+            publicKey = snapshot.publicKeys().get(kid);
+        }
+        return publicKey;
+    }
+
+    /**
+     * @return the public keys as a JSON Web Key Set
+     */
+    public Map<String, Object> getJwks() {
+        return Map.of("keys", snapshot.jwks());
+    }
+}
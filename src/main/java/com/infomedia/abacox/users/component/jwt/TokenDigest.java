@@ -0,0 +1,87 @@
+package com.infomedia.abacox.users.component.jwt;
+
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digest of a token, held as four longs so it can be used as a compact map key.
+ *
+ * The digest is computed with per-thread MessageDigest and scratch buffers, so hashing a token
+ * allocates nothing but the resulting key. The token is hashed as UTF-8: ASCII tokens (JWTs and our
+ * prefixed download tokens) are copied byte per char, anything else goes through {@link String#getBytes}
+ * so distinct tokens never share a digest.
+ */
+public record TokenDigest(long h0, long h1, long h2, long h3) {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int DIGEST_LENGTH = 32;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 algorithm not found", e);
+        }
+    });
+
+    private static final ThreadLocal<byte[]> INPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[1024]);
+    private static final ThreadLocal<byte[]> OUTPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[DIGEST_LENGTH]);
+
+    public static TokenDigest of(@NonNull String token) {
+        int length = token.length();
+        byte[] input = INPUT_BUFFER.get();
+        if (input.length < length) {
+            input = new byte[Math.max(length, input.length * 2)];
+            INPUT_BUFFER.set(input);
+        }
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            if (c >= 0x80) {
+                input = token.getBytes(StandardCharsets.UTF_8);
+                length = input.length;
+                break;
+            }
+            input[i] = (byte) c;
+        }
+        MessageDigest md = SHA256.get();
+        byte[] output = OUTPUT_BUFFER.get();
+        md.update(input, 0, length);
+        try {
+            md.digest(output, 0, DIGEST_LENGTH);
+        } catch (Exception e) {
+            md.reset();
+            throw new IllegalStateException("Could not compute token digest", e);
+        }
+        return new TokenDigest(readLong(output, 0), readLong(output, 8), readLong(output, 16), readLong(output, 24));
+    }
+
+    /**
+     * @return the digest as a 64 character lowercase hexadecimal string
+     */
+    public String toHex() {
+        char[] chars = new char[DIGEST_LENGTH * 2];
+        writeHex(chars, 0, h0);
+        writeHex(chars, 16, h1);
+        writeHex(chars, 32, h2);
+        writeHex(chars, 48, h3);
+        return new String(chars);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.infomedia.abacox.users.component.password;
+
+import com.infomedia.abacox.users.dto.metrics.PasswordVerificationStatsDto;
+import com.infomedia.abacox.users.exception.ServiceOverloadedException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs password hashing (matching and encoding) on a dedicated pool sized to the available cores.
+ *
+ * The calling web server worker waits for the hash, so the number of hashes in flight (running or queued)
+ * is capped by auth.password-verification.max-in-flight, by default twice the pool size, which stays well
+ * below the web server's worker count (8 per core on Undertow). Callers over the cap, or over the queue
+ * capacity, are rejected immediately with a {@link ServiceOverloadedException}, so a login storm can never
+ * occupy every worker and starve the cheap endpoints such as token validation.
+ *
+ * A hash keeps its slot until it finishes, also when its caller gave up after the timeout: a running
+ * hash can't be interrupted, and releasing the slot early would let the pool's backlog grow unbounded.
+ */
+@Component
+@Log4j2
+public class PasswordVerificationExecutor {
+
+    @Value("${auth.password-verification.threads:0}")
+    private int threads;
+
+    @Value("${auth.password-verification.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${auth.password-verification.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${auth.password-verification.max-in-flight:0}")
+    private int maxInFlight;
+
+    private ThreadPoolExecutor executor;
+    private Semaphore inFlight;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "password-verification-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        if (maxInFlight <= 0) {
+            maxInFlight = poolSize * 2;
+        }
+        inFlight = new Semaphore(maxInFlight);
+        log.info("Password verification pool started with {} threads, a queue of {} and at most {} hashes in flight",
+                poolSize, queueCapacity, maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean matches(PasswordEncoder encoder, CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    public String encode(PasswordEncoder encoder, CharSequence rawPassword) {
+        return execute(() -> encoder.encode(rawPassword));
+    }
+
+    private <T> T execute(Callable<T> hashing) {
+        if (!inFlight.tryAcquire()) {
+            rejected.increment();
+            throw new ServiceOverloadedException("Too many concurrent authentication requests, try again later", 1);
+        }
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitNanos.add(startedAt - submittedAt);
+                try {
+                    return hashing.call();
+                } finally {
+                    long elapsed = System.nanoTime() - startedAt;
+                    hashNanos.add(elapsed);
+                    maxHashNanos.accumulateAndGet(elapsed, Math::max);
+                    completed.increment();
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            rejected.increment();
+            throw new ServiceOverloadedException("Too many concurrent authentication requests, try again later", 1);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Not cancelled: the hash can't be interrupted, and it releases its slot when it finishes
+            rejected.increment();
+            throw new ServiceOverloadedException("Authentication timed out, try again later", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password verification failed", e.getCause());
+        }
+    }
+
+    public PasswordVerificationStatsDto getStats() {
+        long completedCount = completed.sum();
+        return PasswordVerificationStatsDto.builder()
+                .threads(executor.getMaximumPoolSize())
+                .active(executor.getActiveCount())
+                .queueCapacity(queueCapacity)
+                .queueDepth(executor.getQueue().size())
+                .maxInFlight(maxInFlight)
+                .inFlight(maxInFlight - inFlight.availablePermits())
+                .completed(completedCount)
+                .rejected(rejected.sum())
+                .averageHashMillis(completedCount == 0 ? 0.0 : hashNanos.sum() / 1e6 / completedCount)
+                .maxHashMillis(maxHashNanos.get() / 1e6)
+                .averageQueueWaitMillis(completedCount == 0 ? 0.0 : queueWaitNanos.sum() / 1e6 / completedCount)
+                .build();
+    }
+}
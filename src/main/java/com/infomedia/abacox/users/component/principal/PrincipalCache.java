@@ -0,0 +1,109 @@
+package com.infomedia.abacox.users.component.principal;
+
+import com.infomedia.abacox.users.component.cache.ExpiringCache;
+import com.infomedia.abacox.users.dto.metrics.CacheStatsDto;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of {@link UserPrincipal} snapshots keyed by username, used by login and token validation.
+ *
+ * Writes to users and roles invalidate entries right away and again after their transaction commits, so a
+ * concurrent load can't leave the pre-commit state behind. Loads also carry the invalidation generation
+ * read before hitting the database and are dropped if an invalidation happened meanwhile.
+ * Changes made on other nodes are picked up by {@link com.infomedia.abacox.users.service.UserService#syncPrincipalCache()},
+ * which polls for users and roles modified since {@link #getSyncedUntil()}.
+ * Entries expire after a TTL as a safety net for changes made outside this service.
+ */
+@Component
+public class PrincipalCache {
+
+    @Value("${auth.principal-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${auth.principal-cache.ttl:300}")
+    private long ttlSec;
+
+    private ExpiringCache<String, UserPrincipal> cache;
+    private final AtomicLong generation = new AtomicLong();
+    @Getter
+    @Setter
+    private volatile LocalDateTime syncedUntil = LocalDateTime.now();
+
+    @PostConstruct
+    public void init() {
+        cache = new ExpiringCache<>("principals", maxSize);
+    }
+
+    /**
+     * @return the cached principal, or null if it is not cached or the cache is disabled
+     */
+    public UserPrincipal get(String username) {
+        return enabled ? cache.get(username, System.currentTimeMillis()) : null;
+    }
+
+    /**
+     * @return the generation to pass to {@link #put(UserPrincipal, long)}, read before loading from the database
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    public void put(UserPrincipal principal, long loadGeneration) {
+        if (!enabled || generation.get() != loadGeneration) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        cache.put(principal.username(), principal, now + ttlSec * 1000, now);
+    }
+
+    public void invalidate(String username) {
+        generation.incrementAndGet();
+        cache.invalidate(username);
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.invalidate(username);
+        });
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.clear();
+        });
+    }
+
+    public CacheStatsDto getStats() {
+        return cache.getStats();
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void purgeExpired() {
+        cache.purgeExpired(System.currentTimeMillis());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.infomedia.abacox.users.component.principal;
+
+import com.infomedia.abacox.users.constants.PasswordEncodingAlgorithm;
+import com.infomedia.abacox.users.dto.user.UserDto;
+import com.infomedia.abacox.users.entity.User;
+
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of a user with what authentication needs: identity, activation, role, password
+ * hash and encoder, session epoch, and the already mapped UserDto returned by the auth endpoints.
+ * The UserDto is copied when the snapshot is built and again on every {@link #user()} call, so callers
+ * that modify or serialize it can't change the cached snapshot.
+ */
+public record UserPrincipal(UUID id,
+                            String username,
+                            boolean active,
+                            UUID roleId,
+                            String roleName,
+                            String rolename,
+                            String password,
+                            PasswordEncodingAlgorithm passwordEncoder,
+                            long sessionEpoch,
+                            UserDto user) {
+
+    public UserPrincipal {
+        user = copy(user);
+    }
+
+    public static UserPrincipal of(User user, UserDto userDto) {
+        return new UserPrincipal(user.getId(),
+                user.getUsername(),
+                user.isActive(),
+                user.getRole().getId(),
+                user.getRole().getName(),
+                user.getRole().getRolename(),
+                user.getPassword(),
+                user.getPasswordEncoder(),
+                user.getSessionEpoch(),
+                userDto);
+    }
+
+    /**
+     * @return a copy of the mapped user, owned by the caller
+     */
+    @Override
+    public UserDto user() {
+        return copy(user);
+    }
+
+    private static UserDto copy(UserDto user) {
+        if (user == null) {
+            return null;
+        }
+        return user.toBuilder()
+                .role(user.getRole() == null ? null : user.getRole().toBuilder().build())
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return "UserPrincipal[id=" + id + ", username=" + username + ", active=" + active + ", rolename=" + rolename + "]";
+    }
+}
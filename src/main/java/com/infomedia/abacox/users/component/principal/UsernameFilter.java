@@ -0,0 +1,129 @@
+package com.infomedia.abacox.users.component.principal;
+
+import com.infomedia.abacox.users.component.cache.BloomFilter;
+import com.infomedia.abacox.users.dto.metrics.BloomFilterStatsDto;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of every username, used to answer "this user does not exist" without a query for login
+ * attempts (see UserService.findPrincipalForLogin).
+ *
+ * Until the filter is first built, and when it is disabled, every username is reported as possibly
+ * existing. Usernames are added as users are created on this node; users created on other nodes are
+ * picked up by the periodic sync in UserService, so they may be unknown here for up to one sync interval.
+ * Deleted users are only dropped by the next full rebuild, which just makes them false positives.
+ */
+@Component
+@Log4j2
+public class UsernameFilter {
+
+    @Value("${auth.username-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${auth.username-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${auth.username-filter.min-capacity:10000}")
+    private long minCapacity;
+
+    private volatile BloomFilter filter;
+    // Filter being built by a rebuild, receives the usernames added meanwhile
+    private volatile BloomFilter pending;
+    private volatile LocalDateTime syncedUntil;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * @return false if no user has the username, true if one might
+     */
+    public boolean mightExist(String username) {
+        BloomFilter current = filter;
+        if (!enabled || current == null) {
+            return true;
+        }
+        lookups.increment();
+        if (current.mightContain(username)) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Records that a username reported as possibly existing was not found.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    public void add(String username) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(username);
+        }
+        BloomFilter building = pending;
+        if (building != null) {
+            building.put(username);
+        }
+    }
+
+    /**
+     * Replaces the filter with a new one holding the given usernames, sized for twice the current user count.
+     *
+     * @param startedAt when the usernames started to be read, later syncs pick up users created from then on
+     */
+    public synchronized void rebuild(long userCount, Stream<String> usernames, LocalDateTime startedAt) {
+        if (!enabled) {
+            return;
+        }
+        BloomFilter building = new BloomFilter(Math.max(minCapacity, userCount * 2), falsePositiveRate);
+        pending = building;
+        try {
+            usernames.forEach(building::put);
+            filter = building;
+            syncedUntil = startedAt;
+        } finally {
+            pending = null;
+        }
+        log.debug("Username filter rebuilt for {} users, {} bytes", userCount, building.getMemoryBytes());
+    }
+
+    public boolean isReady() {
+        return enabled && filter != null;
+    }
+
+    public LocalDateTime getSyncedUntil() {
+        return syncedUntil;
+    }
+
+    public void setSyncedUntil(LocalDateTime syncedUntil) {
+        this.syncedUntil = syncedUntil;
+    }
+
+    public BloomFilterStatsDto getStats() {
+        BloomFilter current = filter;
+        long lookupCount = lookups.sum();
+        long positives = lookupCount - rejections.sum();
+        return BloomFilterStatsDto.builder()
+                .name("usernames")
+                .ready(current != null)
+                .expectedInsertions(current == null ? 0 : current.getExpectedInsertions())
+                .bitSize(current == null ? 0 : current.getBitSize())
+                .hashFunctions(current == null ? 0 : current.getHashFunctions())
+                .memoryBytes(current == null ? 0 : current.getMemoryBytes())
+                .expectedFalsePositiveRate(current == null ? 0 : current.expectedFalsePositiveRate())
+                .lookups(lookupCount)
+                .rejections(rejections.sum())
+                .falsePositives(falsePositives.sum())
+                .observedFalsePositiveRate(positives == 0 ? 0 : (double) falsePositives.sum() / positives)
+                .build();
+    }
+}
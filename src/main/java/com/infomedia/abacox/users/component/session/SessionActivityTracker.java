@@ -0,0 +1,147 @@
+package com.infomedia.abacox.users.component.session;
+
+import com.infomedia.abacox.users.component.session.store.SessionStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces session usage into one last-activity write per session and flush interval.
+ *
+ * Every use of a session records a touch in memory, keeping only the latest instant per loginId; touches
+ * are spread over lock stripes so concurrent requests rarely contend. Every
+ * auth.session-activity.flush-interval-ms the latest touches are handed to {@link SessionStore#recordActivity}
+ * in one batch, whatever the request rate was. A stripe that reaches its share of
+ * auth.session-activity.max-pending is written right away by the request that found it full, so no touch is
+ * dropped and idle timeouts never see a stale last activity. Touches not flushed yet are lost if the process
+ * dies, which only makes last_activity older than it should be by up to one interval.
+ */
+@Component
+@Log4j2
+public class SessionActivityTracker {
+
+    private static final class Stripe {
+        private Map<UUID, long[]> touches = new HashMap<>();
+    }
+
+    private final SessionStore sessionStore;
+    private final Stripe[] stripes;
+    // Touches being written, still visible to getPendingActivity until their write is done
+    private final Map<UUID, LocalDateTime> flushing = new ConcurrentHashMap<>();
+    private final AtomicLong earlyFlushes = new AtomicLong();
+
+    @Value("${auth.session-activity.max-pending:100000}")
+    private int maxPending;
+
+    public SessionActivityTracker(SessionStore sessionStore,
+                                  @Value("${auth.session-activity.stripes:64}") int stripeCount) {
+        this.sessionStore = sessionStore;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public void touch(UUID loginId) {
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripeFor(loginId);
+        Map<UUID, LocalDateTime> full = null;
+        synchronized (stripe) {
+            long[] latest = stripe.touches.get(loginId);
+            if (latest != null) {
+                latest[0] = Math.max(latest[0], now);
+                return;
+            }
+            if (stripe.touches.size() > maxPending / stripes.length) {
+                full = detach(stripe);
+            }
+            stripe.touches.put(loginId, new long[]{now});
+        }
+        if (full != null) {
+            long count = earlyFlushes.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                log.warn("Session activity stripe full, written before the flush interval ({} times so far),"
+                        + " consider raising auth.session-activity.max-pending", count);
+            }
+            write(full);
+        }
+    }
+
+    /**
+     * @return the latest touch of the session not flushed yet, or null if there is none
+     */
+    public LocalDateTime getPendingActivity(UUID loginId) {
+        Stripe stripe = stripeFor(loginId);
+        synchronized (stripe) {
+            long[] latest = stripe.touches.get(loginId);
+            if (latest != null) {
+                return toLocalDateTime(latest[0]);
+            }
+        }
+        return flushing.get(loginId);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.session-activity.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        Map<UUID, LocalDateTime> batch = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (!stripe.touches.isEmpty()) {
+                    batch.putAll(detach(stripe));
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Takes the stripe's touches, publishing them in {@link #flushing} before the stripe lock is released.
+     */
+    private Map<UUID, LocalDateTime> detach(Stripe stripe) {
+        Map<UUID, LocalDateTime> batch = new HashMap<>(stripe.touches.size() * 2);
+        stripe.touches.forEach((loginId, latest) -> {
+            LocalDateTime activity = toLocalDateTime(latest[0]);
+            batch.put(loginId, activity);
+            flushing.merge(loginId, activity, (a, b) -> a.isAfter(b) ? a : b);
+        });
+        stripe.touches = new HashMap<>();
+        return batch;
+    }
+
+    private void write(Map<UUID, LocalDateTime> batch) {
+        try {
+            sessionStore.recordActivity(batch);
+        } catch (Exception e) {
+            log.warn("Could not record activity of {} sessions: {}", batch.size(), e.getMessage());
+        } finally {
+            // Only the value this batch wrote: a later touch detached meanwhile stays visible until its own write
+            batch.forEach((loginId, activity) -> flushing.remove(loginId, activity));
+        }
+    }
+
+    private Stripe stripeFor(UUID loginId) {
+        return stripes[Math.floorMod(loginId.hashCode(), stripes.length)];
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
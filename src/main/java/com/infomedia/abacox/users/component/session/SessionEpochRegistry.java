@@ -0,0 +1,109 @@
+package com.infomedia.abacox.users.component.session;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory table of per-user session epochs and of individually revoked loginIds.
+ *
+ * Access and download tokens carry the user's session epoch at issue time. Bumping the epoch
+ * (logout-all, deactivation, role change) invalidates every token issued before, so a token is valid
+ * as long as its epoch matches the current one and its loginId was not revoked on its own.
+ *
+ * Entries hold either an epoch read from the database ({@link #setEpoch}) or one written by a bump of this
+ * node, added only once the bump has committed ({@link #putEpochAfterCommit}) so a rolled back bump never
+ * leaves an epoch the database doesn't have. Entries expire after a short TTL, which bounds how long a node
+ * keeps accepting tokens after an epoch bump made on another node. Sessions revoked on another node, or before this node started,
+ * are added by {@link SessionRevocationSync}.
+ */
+@Component
+public class SessionEpochRegistry {
+
+    private record EpochEntry(long epoch, long expiresAt) {
+    }
+
+    @Value("${auth.session-epoch.ttl:30}")
+    private long epochTtlSec;
+
+    @Value("${auth.jwt.access-token-duration}")
+    private long accessTokenDurationSec;
+
+    @Value("${auth.jwt.download-token-duration}")
+    private long downloadTokenDurationSec;
+
+    private final Map<UUID, EpochEntry> epochs = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> revokedLogins = new ConcurrentHashMap<>();
+
+    /**
+     * @return the known epoch of the user, or null if it is unknown or stale and must be loaded
+     */
+    public Long getEpoch(UUID userId) {
+        EpochEntry entry = epochs.get(userId);
+        if (entry == null || entry.expiresAt() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.epoch();
+    }
+
+    /**
+     * Stores the epoch as read from the database.
+     */
+    public void setEpoch(UUID userId, long epoch) {
+        epochs.put(userId, new EpochEntry(epoch, System.currentTimeMillis() + epochTtlSec * 1000));
+    }
+
+    /**
+     * Stores an epoch bumped by the current transaction once it commits, or right away outside a transaction.
+     * Merged with max, so a database read that finished meanwhile can't roll the bump back.
+     */
+    public void putEpochAfterCommit(UUID userId, long epoch) {
+        Runnable put = () -> {
+            long expiresAt = System.currentTimeMillis() + epochTtlSec * 1000;
+            epochs.merge(userId, new EpochEntry(epoch, expiresAt), (current, bumped) ->
+                    current.epoch() > bumped.epoch() ? current : bumped);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put.run();
+                }
+            });
+        } else {
+            put.run();
+        }
+    }
+
+    /**
+     * Marks a single session as revoked for as long as any token carrying its loginId may still be presented.
+     */
+    public void revokeLogin(UUID loginId) {
+        revokedLogins.put(loginId, System.currentTimeMillis() + getRevocationTtlMillis());
+    }
+
+    /**
+     * @return how long a revocation must be remembered, the longest lifetime of a token carrying a loginId
+     */
+    public long getRevocationTtlMillis() {
+        return Math.max(accessTokenDurationSec, downloadTokenDurationSec) * 1000;
+    }
+
+    public boolean isRevoked(UUID loginId) {
+        Long expiresAt = revokedLogins.get(loginId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        epochs.values().removeIf(entry -> entry.expiresAt() <= now);
+        revokedLogins.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+}
@@ -0,0 +1,60 @@
+package com.infomedia.abacox.users.component.session;
+
+import com.infomedia.abacox.users.component.session.store.SessionStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Brings sessions logged out on other nodes into this node's {@link SessionEpochRegistry} and
+ * {@link SessionValidityCache}, so their access and download tokens, which are checked against those and
+ * not against the login table, are rejected everywhere and not only on the node that handled the logout.
+ *
+ * Every auth.session-revocation-sync.interval-ms the sessions logged out since the previous run are read
+ * from the session store with one indexed query. Each run looks back auth.session-revocation-sync.overlap-ms
+ * further, to cover clock differences between nodes and logouts whose transaction committed after the
+ * previous run read. The first run looks back over the longest token lifetime, so a restarted node also
+ * knows about the revocations it made before it went down.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class SessionRevocationSync {
+
+    private final SessionStore sessionStore;
+    private final SessionEpochRegistry sessionEpochRegistry;
+    private final SessionValidityCache sessionValidityCache;
+
+    @Value("${auth.session-revocation-sync.overlap-ms:60000}")
+    private long overlapMillis;
+
+    private LocalDateTime lastRunStart;
+
+    @Scheduled(fixedDelayString = "${auth.session-revocation-sync.interval-ms:5000}")
+    public synchronized void sync() {
+        LocalDateTime runStart = LocalDateTime.now();
+        LocalDateTime since = lastRunStart == null
+                ? runStart.minus(sessionEpochRegistry.getRevocationTtlMillis(), ChronoUnit.MILLIS)
+                : lastRunStart.minus(overlapMillis, ChronoUnit.MILLIS);
+        Map<UUID, LocalDateTime> loggedOut;
+        try {
+            loggedOut = sessionStore.findLoggedOutSince(since);
+        } catch (Exception e) {
+            // Retried from the same point on the next run
+            log.warn("Could not read revoked sessions: {}", e.getMessage());
+            return;
+        }
+        loggedOut.forEach((loginId, expirationDate) -> {
+            sessionEpochRegistry.revokeLogin(loginId);
+            sessionValidityCache.revoke(loginId, expirationDate);
+        });
+        lastRunStart = runStart;
+    }
+}
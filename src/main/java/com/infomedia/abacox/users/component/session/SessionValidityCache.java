@@ -0,0 +1,82 @@
+package com.infomedia.abacox.users.component.session;
+
+import com.infomedia.abacox.users.component.cache.ExpiringCache;
+import com.infomedia.abacox.users.dto.metrics.CacheStatsDto;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * In-memory cache of session (login) validity keyed by loginId.
+ *
+ * A valid session is cached until its expiration date, but for no longer than auth.session-cache.valid-ttl
+ * seconds, which bounds how long a logout on another node can go unnoticed if {@link SessionRevocationSync}
+ * falls behind. Revocation is terminal, so revoked sessions are stored as sticky negative entries: a
+ * concurrent load that read the pre-revocation state from the database can never overwrite them.
+ */
+@Component
+public class SessionValidityCache {
+
+    @Value("${auth.session-cache.max-size:100000}")
+    private int maxSize;
+
+    @Value("${auth.session-cache.negative-ttl:900}")
+    private long negativeTtlSec;
+
+    @Value("${auth.session-cache.valid-ttl:${auth.jwt.access-token-duration:900}}")
+    private long validTtlSec;
+
+    private ExpiringCache<UUID, Boolean> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new ExpiringCache<>("sessionValidity", maxSize);
+    }
+
+    /**
+     * @return the cached validity, or null if the session is not cached
+     */
+    public Boolean get(UUID loginId) {
+        long now = System.currentTimeMillis();
+        return cache.get(loginId, now);
+    }
+
+    public void putValid(UUID loginId, LocalDateTime expirationDate) {
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.min(toEpochMillis(expirationDate), now + validTtlSec * 1000);
+        cache.putIfAbsent(loginId, Boolean.TRUE, expiresAt, now);
+    }
+
+    public void putInvalid(UUID loginId) {
+        long now = System.currentTimeMillis();
+        cache.putIfAbsent(loginId, Boolean.FALSE, now + negativeTtlSec * 1000, now);
+    }
+
+    public void revoke(UUID loginId, LocalDateTime expirationDate) {
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.max(toEpochMillis(expirationDate), now + negativeTtlSec * 1000);
+        cache.put(loginId, Boolean.FALSE, expiresAt, now);
+    }
+
+    public void invalidate(UUID loginId) {
+        cache.invalidate(loginId);
+    }
+
+    public CacheStatsDto getStats() {
+        return cache.getStats();
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void purgeExpired() {
+        cache.purgeExpired(System.currentTimeMillis());
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,223 @@
+package com.infomedia.abacox.users.component.session;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind queue for new sessions (login rows), enabled with auth.session-write-behind.enabled.
+ *
+ * A login gets its id in-process and is queued here instead of being inserted before the tokens are
+ * returned. Queued logins are inserted with batched JDBC statements every flush interval, when the
+ * application shuts down, and whenever an operation needs to see them in the login table (refresh, logout,
+ * logout-all): those call {@link #flushIfPending} first, so they read their own writes.
+ *
+ * The queue is bounded by auth.session-write-behind.max-pending; when it is full, {@link #enqueue} refuses
+ * the login and the caller inserts it synchronously.
+ *
+ * Each login is inserted together with its active_session row, in the same transaction.
+ *
+ * Crash safety: logins still queued when the process dies are lost. Their refresh tokens are then
+ * rejected and the user has to log in again; access and download tokens already issued stay valid until
+ * they expire, since they are checked against the session epoch and not the login row. Logins whose insert
+ * fails for a database outage stay queued and are retried; logins rejected by a constraint (e.g. the user
+ * was deleted meanwhile) are dropped and logged.
+ */
+@Component
+@Log4j2
+public class SessionWriteBehind {
+
+    private static final String INSERT_SQL = """
+            insert into login (id, user_id, token, token_digest, login_date, expiration_date)
+            values (?, ?, ?, ?, ?, ?) on conflict (id) do nothing""";
+    private static final String INSERT_ACTIVE_SQL = """
+            insert into active_session (id, user_id, login_date, expiration_date)
+            values (?, ?, ?, ?) on conflict (id) do nothing""";
+
+    public record PendingLogin(UUID id, UUID userId, String token, String tokenDigest,
+                               LocalDateTime loginDate, LocalDateTime expirationDate) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${auth.session-write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${auth.session-write-behind.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${auth.session-write-behind.batch-size:500}")
+    private int batchSize;
+
+    private final ConcurrentLinkedQueue<PendingLogin> queue = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, PendingLogin> pendingById = new ConcurrentHashMap<>();
+    private final Map<String, UUID> pendingByDigest = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean closed;
+
+    public SessionWriteBehind(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Inserts commit on their own, even when a flush is triggered from inside another transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a login for insertion.
+     *
+     * @return false if write-behind is disabled, shut down or full; the caller must then insert the login itself
+     */
+    public boolean enqueue(PendingLogin login) {
+        if (!enabled || closed) {
+            return false;
+        }
+        if (size.incrementAndGet() > maxPending) {
+            size.decrementAndGet();
+            return false;
+        }
+        pendingById.put(login.id(), login);
+        pendingByDigest.put(login.tokenDigest(), login.id());
+        queue.add(login);
+        return true;
+    }
+
+    /**
+     * @return the queued login with the id, or null if it is not queued
+     */
+    public PendingLogin getPending(UUID loginId) {
+        return pendingById.isEmpty() ? null : pendingById.get(loginId);
+    }
+
+    /**
+     * Flushes the queue if it holds a login with the id, so it can be read from the login table.
+     */
+    public void flushIfPending(UUID loginId) {
+        if (!pendingById.isEmpty() && pendingById.containsKey(loginId)) {
+            flush();
+        }
+    }
+
+    /**
+     * Flushes the queue if it holds a login with the refresh token digest.
+     */
+    public void flushIfPendingDigest(String tokenDigest) {
+        if (!pendingByDigest.isEmpty() && pendingByDigest.containsKey(tokenDigest)) {
+            flush();
+        }
+    }
+
+    /**
+     * Flushes the queue if it holds a login of the user.
+     */
+    public void flushIfPendingForUser(UUID userId) {
+        if (!pendingById.isEmpty() && pendingById.values().stream().anyMatch(login -> login.userId().equals(userId))) {
+            flush();
+        }
+    }
+
+    /**
+     * Inserts every queued login. Logins stay visible through {@link #getPending} until their insert commits.
+     */
+    @Scheduled(fixedDelayString = "${auth.session-write-behind.flush-interval-ms:200}")
+    public synchronized void flush() {
+        List<PendingLogin> batch = new ArrayList<>(batchSize);
+        for (PendingLogin login = queue.peek(); login != null; login = queue.peek()) {
+            batch.add(login);
+            queue.poll();
+            if (batch.size() == batchSize) {
+                if (!insert(batch)) {
+                    return;
+                }
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        flush();
+        if (size.get() > 0) {
+            log.error("{} queued logins could not be written on shutdown", size.get());
+        }
+    }
+
+    /**
+     * @return false if the batch was put back in the queue to be retried
+     */
+    private boolean insert(List<PendingLogin> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch.stream().map(SessionWriteBehind::toArgs).toList());
+                jdbcTemplate.batchUpdate(INSERT_ACTIVE_SQL, batch.stream().map(SessionWriteBehind::toActiveArgs).toList());
+            });
+            batch.forEach(this::remove);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // One bad row fails the whole batch, insert the rows one by one to isolate it
+            for (int i = 0; i < batch.size(); i++) {
+                PendingLogin login = batch.get(i);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        jdbcTemplate.update(INSERT_SQL, toArgs(login));
+                        jdbcTemplate.update(INSERT_ACTIVE_SQL, toActiveArgs(login));
+                    });
+                } catch (DataIntegrityViolationException rowException) {
+                    log.error("Dropping queued login {}: {}", login.id(), rowException.getMessage());
+                } catch (DataAccessException rowException) {
+                    // The database went away mid-way, keep the rows not written yet for the next flush
+                    List<PendingLogin> remaining = batch.subList(i, batch.size());
+                    log.warn("Could not write {} queued logins, retrying later: {}", remaining.size(), rowException.getMessage());
+                    queue.addAll(remaining);
+                    return false;
+                }
+                remove(login);
+            }
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("Could not write {} queued logins, retrying later: {}", batch.size(), e.getMessage());
+            queue.addAll(batch);
+            return false;
+        }
+    }
+
+    private void remove(PendingLogin login) {
+        pendingByDigest.remove(login.tokenDigest(), login.id());
+        pendingById.remove(login.id());
+        size.decrementAndGet();
+    }
+
+    private static Object[] toArgs(PendingLogin login) {
+        return new Object[]{login.id(), login.userId(), login.token(), login.tokenDigest(),
+                login.loginDate(), login.expirationDate()};
+    }
+
+    private static Object[] toActiveArgs(PendingLogin login) {
+        return new Object[]{login.id(), login.userId(), login.loginDate(), login.expirationDate()};
+    }
+}
@@ -0,0 +1,369 @@
+package com.infomedia.abacox.users.component.session.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infomedia.abacox.users.component.configmanager.ConfigKey;
+import com.infomedia.abacox.users.component.configmanager.ConfigService;
+import com.infomedia.abacox.users.dto.login.ActiveSessionCountDto;
+import com.infomedia.abacox.users.entity.ActiveSession;
+import com.infomedia.abacox.users.entity.Login;
+import com.infomedia.abacox.users.entity.User;
+import com.infomedia.abacox.users.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Session store that keeps sessions in memory, for single-node deployments and tests. Sessions are indexed
+ * by id, refresh token digest and user.
+ *
+ * If auth.session-store.memory.snapshot-file is set, sessions are written to that file every
+ * auth.session-store.memory.snapshot-interval-ms and on shutdown, and loaded from it on startup; sessions
+ * created after the last snapshot are lost if the process dies. Closed sessions are dropped
+ * LOGIN_RETENTION_DAYS after their logout, there is no archive.
+ *
+ * The admin listing supports paging and sorting by the date columns, not filters. Active session listings
+ * and counts are answered from the per-user index.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.session-store.type", havingValue = "memory")
+@RequiredArgsConstructor
+@Log4j2
+public class InMemorySessionStore implements SessionStore {
+
+    record SessionRecord(UUID id, UUID userId, String token, String tokenDigest, LocalDateTime loginDate,
+                         LocalDateTime expirationDate, LocalDateTime logoutDate, LocalDateTime lastActivity) {
+
+        boolean isValid(LocalDateTime currentTime) {
+            return logoutDate == null && expirationDate.isAfter(currentTime);
+        }
+
+        SessionRecord withLogoutDate(LocalDateTime logoutDate) {
+            return new SessionRecord(id, userId, token, tokenDigest, loginDate, expirationDate, logoutDate, lastActivity);
+        }
+
+        SessionRecord withLastActivity(LocalDateTime lastActivity) {
+            return new SessionRecord(id, userId, token, tokenDigest, loginDate, expirationDate, logoutDate, lastActivity);
+        }
+    }
+
+    private static final Map<String, Function<SessionRecord, LocalDateTime>> SORTABLE = Map.of(
+            "loginDate", SessionRecord::loginDate,
+            "expirationDate", SessionRecord::expirationDate,
+            "logoutDate", SessionRecord::logoutDate,
+            "lastActivity", SessionRecord::lastActivity);
+
+    /**
+     * Order of uuid values in the database (unsigned, byte by byte), used for the sweeper's keyset cursor.
+     * UUID.compareTo is signed and would put every id with the high bit set before the first cursor.
+     */
+    static final Comparator<UUID> ID_ORDER = (a, b) -> {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    private final UserRepository userRepository;
+    private final ConfigService configService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${auth.session-store.memory.snapshot-file:}")
+    private String snapshotFile;
+
+    private final Map<UUID, SessionRecord> sessions = new ConcurrentHashMap<>();
+    private final Map<String, UUID> byTokenDigest = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> byUser = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (snapshotFile.isBlank() || !Files.exists(Path.of(snapshotFile))) {
+            return;
+        }
+        try {
+            List<SessionRecord> records = objectMapper.readValue(Path.of(snapshotFile).toFile(), new TypeReference<>() {
+            });
+            records.forEach(this::index);
+            log.info("Loaded {} sessions from {}", records.size(), snapshotFile);
+        } catch (IOException e) {
+            log.error("Could not load session snapshot from {}", snapshotFile, e);
+        }
+    }
+
+    @Override
+    public Login create(UUID userId, String token, String tokenDigest, LocalDateTime loginDate,
+                        LocalDateTime expirationDate) {
+        SessionRecord record = new SessionRecord(UUID.randomUUID(), userId, token, tokenDigest, loginDate,
+                expirationDate, null, null);
+        index(record);
+        return toLogin(record, null);
+    }
+
+    @Override
+    public Optional<Login> findById(UUID id) {
+        return Optional.ofNullable(sessions.get(id)).map(this::toLogin);
+    }
+
+    @Override
+    public Optional<Login> findOpenByTokenDigest(String tokenDigest) {
+        return findByTokenDigest(tokenDigest).filter(record -> record.logoutDate() == null).map(this::toLogin);
+    }
+
+    @Override
+    public Optional<Login> findActiveByTokenDigest(String tokenDigest, LocalDateTime currentTime) {
+        return findByTokenDigest(tokenDigest)
+                .filter(record -> record.isValid(currentTime))
+                .flatMap(record -> userRepository.findById(record.userId())
+                        .filter(User::isActive)
+                        .map(user -> toLogin(record, user)));
+    }
+
+    @Override
+    public Optional<LocalDateTime> findValidExpiration(UUID id, LocalDateTime currentTime) {
+        return Optional.ofNullable(sessions.get(id))
+                .filter(record -> record.isValid(currentTime))
+                .map(SessionRecord::expirationDate);
+    }
+
+    @Override
+    public Map<UUID, LocalDateTime> findValidExpirations(Collection<UUID> ids, LocalDateTime currentTime) {
+        Map<UUID, LocalDateTime> valid = new HashMap<>();
+        for (UUID id : ids) {
+            SessionRecord record = sessions.get(id);
+            if (record != null && record.isValid(currentTime)) {
+                valid.put(id, record.expirationDate());
+            }
+        }
+        return valid;
+    }
+
+    @Override
+    public Login close(Login login, LocalDateTime logoutDate) {
+        SessionRecord closed = sessions.computeIfPresent(login.getId(),
+                (id, record) -> record.logoutDate() == null ? record.withLogoutDate(logoutDate) : record);
+        login.setLogoutDate(closed == null ? logoutDate : closed.logoutDate());
+        return login;
+    }
+
+    @Override
+    public Map<UUID, LocalDateTime> closeAllByUser(UUID userId, LocalDateTime logoutDate) {
+        Map<UUID, LocalDateTime> closed = new HashMap<>();
+        for (UUID id : byUser.getOrDefault(userId, Set.of())) {
+            sessions.computeIfPresent(id, (key, record) -> {
+                if (record.logoutDate() != null) {
+                    return record;
+                }
+                closed.put(id, record.expirationDate());
+                return record.withLogoutDate(logoutDate);
+            });
+        }
+        return closed;
+    }
+
+    @Override
+    public List<UUID> expireChunk(UUID afterId, LocalDateTime currentTime, int limit) {
+        List<UUID> ids = sessions.values().stream()
+                .filter(record -> record.logoutDate() == null && record.expirationDate().isBefore(currentTime)
+                        && ID_ORDER.compare(record.id(), afterId) > 0)
+                .map(SessionRecord::id)
+                .sorted(ID_ORDER)
+                .limit(limit)
+                .toList();
+        ids.forEach(id -> sessions.computeIfPresent(id, (key, record) ->
+                record.logoutDate() == null ? record.withLogoutDate(record.expirationDate()) : record));
+        return ids;
+    }
+
+    @Override
+    public Map<UUID, LocalDateTime> findLoggedOutSince(LocalDateTime since) {
+        Map<UUID, LocalDateTime> loggedOut = new HashMap<>();
+        sessions.values().stream()
+                .filter(record -> record.logoutDate() != null && !record.logoutDate().isBefore(since)
+                        && record.logoutDate().isBefore(record.expirationDate()))
+                .forEach(record -> loggedOut.put(record.id(), record.expirationDate()));
+        return loggedOut;
+    }
+
+    @Override
+    public void recordActivity(Map<UUID, LocalDateTime> lastActivity) {
+        lastActivity.forEach((id, activity) -> sessions.computeIfPresent(id, (key, record) ->
+                record.lastActivity() == null || record.lastActivity().isBefore(activity)
+                        ? record.withLastActivity(activity) : record));
+    }
+
+    @Override
+    public Page<Login> find(Specification<Login> specification, Pageable pageable) {
+        if (specification != null) {
+            throw new ValidationException("Filters are not supported by the in-memory session store");
+        }
+        List<SessionRecord> records = new ArrayList<>(sessions.values());
+        records.sort(comparator(pageable.getSort()));
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), records.size()) : 0;
+        int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), records.size()) : records.size();
+        List<SessionRecord> page = records.subList(from, to);
+
+        Map<UUID, User> users = new HashMap<>();
+        userRepository.findAllById(page.stream().map(SessionRecord::userId).distinct().toList())
+                .forEach(user -> users.put(user.getId(), user));
+        List<Login> content = page.stream().map(record -> toLogin(record, users.get(record.userId()))).toList();
+        return new PageImpl<>(content, pageable, records.size());
+    }
+
+    @Override
+    public Page<ActiveSession> findActive(UUID userId, UUID roleId, LocalDateTime currentTime, Pageable pageable) {
+        Map<UUID, User> users = new HashMap<>();
+        List<SessionRecord> records = new ArrayList<>(activeRecords(userId, roleId, currentTime, users));
+        records.sort(comparator(pageable.getSort()));
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), records.size()) : 0;
+        int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), records.size()) : records.size();
+        List<ActiveSession> content = records.subList(from, to).stream()
+                .map(record -> toActiveSession(record, users.get(record.userId())))
+                .toList();
+        return new PageImpl<>(content, pageable, records.size());
+    }
+
+    @Override
+    public long countActive(UUID userId, UUID roleId, LocalDateTime currentTime) {
+        return activeRecords(userId, roleId, currentTime, new HashMap<>()).size();
+    }
+
+    @Override
+    public List<ActiveSessionCountDto> countActivePerUser(UUID userId, UUID roleId, LocalDateTime currentTime) {
+        Map<UUID, User> users = new HashMap<>();
+        Map<UUID, Long> counts = new HashMap<>();
+        activeRecords(userId, roleId, currentTime, users).forEach(record -> counts.merge(record.userId(), 1L, Long::sum));
+        return counts.entrySet().stream()
+                .map(entry -> new ActiveSessionCountDto(entry.getKey(), users.get(entry.getKey()).getUsername(),
+                        entry.getValue()))
+                .sorted(Comparator.comparing(ActiveSessionCountDto::getSessions).reversed()
+                        .thenComparing(ActiveSessionCountDto::getUsername))
+                .toList();
+    }
+
+    /**
+     * Drops sessions closed more than LOGIN_RETENTION_DAYS ago and writes the snapshot file, if configured.
+     */
+    @Scheduled(fixedDelayString = "${auth.session-store.memory.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        int retentionDays = configService.getValue(ConfigKey.LOGIN_RETENTION_DAYS).asInt();
+        if (retentionDays > 0) {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+            sessions.values().stream()
+                    .filter(record -> record.logoutDate() != null && record.logoutDate().isBefore(cutoff))
+                    .toList()
+                    .forEach(this::remove);
+        }
+        if (snapshotFile.isBlank()) {
+            return;
+        }
+        Path target = Path.of(snapshotFile);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), new ArrayList<>(sessions.values()));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Could not write session snapshot to {}", snapshotFile, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    private Optional<SessionRecord> findByTokenDigest(String tokenDigest) {
+        return Optional.ofNullable(byTokenDigest.get(tokenDigest)).map(sessions::get);
+    }
+
+    private void index(SessionRecord record) {
+        sessions.put(record.id(), record);
+        byTokenDigest.put(record.tokenDigest(), record.id());
+        byUser.computeIfAbsent(record.userId(), userId -> ConcurrentHashMap.newKeySet()).add(record.id());
+    }
+
+    private void remove(SessionRecord record) {
+        sessions.remove(record.id());
+        byTokenDigest.remove(record.tokenDigest(), record.id());
+        byUser.computeIfPresent(record.userId(), (userId, ids) -> {
+            ids.remove(record.id());
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Collects the valid sessions matching the filters, going through the per-user index when a user is
+     * given. The users of the sessions returned are put in the map.
+     */
+    private List<SessionRecord> activeRecords(UUID userId, UUID roleId, LocalDateTime currentTime,
+                                              Map<UUID, User> users) {
+        Collection<UUID> ids = userId != null ? byUser.getOrDefault(userId, Set.of()) : sessions.keySet();
+        List<SessionRecord> records = ids.stream()
+                .map(sessions::get)
+                .filter(record -> record != null && record.isValid(currentTime))
+                .toList();
+        userRepository.findAllById(records.stream().map(SessionRecord::userId).distinct().toList())
+                .forEach(user -> users.put(user.getId(), user));
+        return records.stream()
+                .filter(record -> users.containsKey(record.userId()))
+                .filter(record -> roleId == null || roleId.equals(users.get(record.userId()).getRole().getId()))
+                .toList();
+    }
+
+    private Login toLogin(SessionRecord record) {
+        return toLogin(record, userRepository.findById(record.userId()).orElse(null));
+    }
+
+    private static Login toLogin(SessionRecord record, User user) {
+        return Login.builder()
+                .id(record.id())
+                .user(user)
+                .token(record.token())
+                .tokenDigest(record.tokenDigest())
+                .loginDate(record.loginDate())
+                .expirationDate(record.expirationDate())
+                .logoutDate(record.logoutDate())
+                .lastActivity(record.lastActivity())
+                .build();
+    }
+
+    private static ActiveSession toActiveSession(SessionRecord record, User user) {
+        return ActiveSession.builder()
+                .id(record.id())
+                .user(user)
+                .loginDate(record.loginDate())
+                .expirationDate(record.expirationDate())
+                .build();
+    }
+
+    private static Comparator<SessionRecord> comparator(Sort sort) {
+        Comparator<SessionRecord> comparator = null;
+        for (Sort.Order order : sort) {
+            Function<SessionRecord, LocalDateTime> property = SORTABLE.get(order.getProperty());
+            if (property == null) {
+                continue;
+            }
+            Comparator<SessionRecord> next = Comparator.comparing(property, Comparator.nullsLast(Comparator.naturalOrder()));
+            next = order.isDescending() ? next.reversed() : next;
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator == null ? Comparator.comparing(SessionRecord::loginDate).reversed() : comparator;
+    }
+}
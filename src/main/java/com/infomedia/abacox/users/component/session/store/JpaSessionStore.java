@@ -0,0 +1,213 @@
+package com.infomedia.abacox.users.component.session.store;
+
+import com.infomedia.abacox.users.component.session.SessionWriteBehind;
+import com.infomedia.abacox.users.dto.login.ActiveSessionCountDto;
+import com.infomedia.abacox.users.entity.ActiveSession;
+import com.infomedia.abacox.users.entity.Login;
+import com.infomedia.abacox.users.repository.ActiveSessionRepository;
+import com.infomedia.abacox.users.repository.LoginRepository;
+import com.infomedia.abacox.users.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Default session store, backed by the login table. New sessions can be queued in {@link SessionWriteBehind}
+ * (see {@link #createDeferred}); reads that must see them flush the queue first.
+ *
+ * Open sessions are also kept in the active_session table (see {@link ActiveSession}), written in the same
+ * transaction as the login row, which serves logout-all and the active session listings.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.session-store.type", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaSessionStore implements SessionStore {
+
+    private final LoginRepository loginRepository;
+    private final ActiveSessionRepository activeSessionRepository;
+    private final UserRepository userRepository;
+    private final SessionWriteBehind sessionWriteBehind;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the login and its active_session row. Transactional on its own so both rows commit together
+     * also when called outside a LoginService transaction (the write-behind fallback).
+     */
+    @Override
+    @Transactional
+    public Login create(UUID userId, String token, String tokenDigest, LocalDateTime loginDate,
+                        LocalDateTime expirationDate) {
+        Login login = Login.builder()
+                .user(userRepository.getReferenceById(userId))
+                .token(token)
+                .tokenDigest(tokenDigest)
+                .loginDate(loginDate)
+                .expirationDate(expirationDate)
+                .build();
+        login = loginRepository.save(login);
+        activeSessionRepository.insert(login.getId(), userId, loginDate, expirationDate);
+        return login;
+    }
+
+    /**
+     * Queues the login row in {@link SessionWriteBehind} and returns the session without its user.
+     * If the queue is full or disabled the row is inserted right away instead.
+     */
+    @Override
+    public Login createDeferred(UUID userId, String token, String tokenDigest, LocalDateTime loginDate,
+                                LocalDateTime expirationDate) {
+        SessionWriteBehind.PendingLogin pending = new SessionWriteBehind.PendingLogin(UUID.randomUUID(), userId,
+                token, tokenDigest, loginDate, expirationDate);
+        if (!sessionWriteBehind.enqueue(pending)) {
+            return create(userId, token, tokenDigest, loginDate, expirationDate);
+        }
+        return Login.builder()
+                .id(pending.id())
+                .token(token)
+                .tokenDigest(tokenDigest)
+                .loginDate(loginDate)
+                .expirationDate(expirationDate)
+                .build();
+    }
+
+    @Override
+    public Optional<Login> findById(UUID id) {
+        sessionWriteBehind.flushIfPending(id);
+        return loginRepository.findById(id);
+    }
+
+    @Override
+    public Optional<Login> findOpenByTokenDigest(String tokenDigest) {
+        sessionWriteBehind.flushIfPendingDigest(tokenDigest);
+        return loginRepository.findByTokenDigestAndLogoutDateIsNull(tokenDigest);
+    }
+
+    @Override
+    public Optional<Login> findActiveByTokenDigest(String tokenDigest, LocalDateTime currentTime) {
+        sessionWriteBehind.flushIfPendingDigest(tokenDigest);
+        return loginRepository.findActiveSessionByTokenDigest(tokenDigest, currentTime);
+    }
+
+    @Override
+    public Optional<LocalDateTime> findValidExpiration(UUID id, LocalDateTime currentTime) {
+        SessionWriteBehind.PendingLogin pending = sessionWriteBehind.getPending(id);
+        if (pending != null) {
+            return Optional.of(pending.expirationDate()).filter(expiration -> expiration.isAfter(currentTime));
+        }
+        return loginRepository.findValidExpirationDate(id, currentTime);
+    }
+
+    @Override
+    public Map<UUID, LocalDateTime> findValidExpirations(Collection<UUID> ids, LocalDateTime currentTime) {
+        Map<UUID, LocalDateTime> valid = new HashMap<>();
+        List<UUID> persisted = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            SessionWriteBehind.PendingLogin pending = sessionWriteBehind.getPending(id);
+            if (pending == null) {
+                persisted.add(id);
+            } else if (pending.expirationDate().isAfter(currentTime)) {
+                valid.put(id, pending.expirationDate());
+            }
+        }
+        if (!persisted.isEmpty()) {
+            loginRepository.findValidExpirationDates(persisted, currentTime)
+                    .forEach(session -> valid.put(session.getId(), session.getExpirationDate()));
+        }
+        return valid;
+    }
+
+    @Override
+    public Login close(Login login, LocalDateTime logoutDate) {
+        login.setLogoutDate(logoutDate);
+        login = loginRepository.save(login);
+        activeSessionRepository.deleteByIds(List.of(login.getId()));
+        return login;
+    }
+
+    /**
+     * Finds the user's open sessions in active_session and closes them by id, so the login history of the
+     * user is never scanned.
+     */
+    @Override
+    public Map<UUID, LocalDateTime> closeAllByUser(UUID userId, LocalDateTime logoutDate) {
+        sessionWriteBehind.flushIfPendingForUser(userId);
+        Map<UUID, LocalDateTime> sessions = new HashMap<>();
+        activeSessionRepository.findByUserId(userId)
+                .forEach(session -> sessions.put(session.getId(), session.getExpirationDate()));
+        if (sessions.isEmpty()) {
+            return Map.of();
+        }
+        loginRepository.logoutByIds(sessions.keySet(), logoutDate);
+        activeSessionRepository.deleteByIds(sessions.keySet());
+        return sessions;
+    }
+
+    @Override
+    public List<UUID> expireChunk(UUID afterId, LocalDateTime currentTime, int limit) {
+        List<UUID> ids = loginRepository.lockExpiredSessionIds(currentTime, afterId, limit);
+        if (!ids.isEmpty()) {
+            loginRepository.expireSessions(ids);
+            activeSessionRepository.deleteByIds(ids);
+        }
+        return ids;
+    }
+
+    @Override
+    public Map<UUID, LocalDateTime> findLoggedOutSince(LocalDateTime since) {
+        Map<UUID, LocalDateTime> sessions = new HashMap<>();
+        loginRepository.findLoggedOutSince(since)
+                .forEach(session -> sessions.put(session.getId(), session.getExpirationDate()));
+        return sessions;
+    }
+
+    /**
+     * Writes every session's last activity with one batched UPDATE.
+     */
+    @Override
+    @Transactional
+    public void recordActivity(Map<UUID, LocalDateTime> lastActivity) {
+        if (lastActivity.keySet().stream().anyMatch(id -> sessionWriteBehind.getPending(id) != null)) {
+            sessionWriteBehind.flush();
+        }
+        jdbcTemplate.batchUpdate("""
+                        update login set last_activity = ? where id = ? and (last_activity is null or last_activity < ?)""",
+                lastActivity.entrySet().stream()
+                        .map(entry -> new Object[]{entry.getValue(), entry.getKey(), entry.getValue()})
+                        .toList());
+    }
+
+    @Override
+    public Page<Login> find(Specification<Login> specification, Pageable pageable) {
+        return loginRepository.findAll(specification, pageable);
+    }
+
+    @Override
+    public Page<ActiveSession> findActive(UUID userId, UUID roleId, LocalDateTime currentTime, Pageable pageable) {
+        return activeSessionRepository.findActive(userId, roleId, currentTime, pageable);
+    }
+
+    @Override
+    public long countActive(UUID userId, UUID roleId, LocalDateTime currentTime) {
+        return activeSessionRepository.countActive(userId, roleId, currentTime);
+    }
+
+    @Override
+    public List<ActiveSessionCountDto> countActivePerUser(UUID userId, UUID roleId, LocalDateTime currentTime) {
+        return activeSessionRepository.countActivePerUser(userId, roleId, currentTime);
+    }
+
+    @Override
+    @Transactional
+    public int backfillActive(LocalDateTime currentTime) {
+        sessionWriteBehind.flush();
+        return activeSessionRepository.backfill(currentTime);
+    }
+}
@@ -0,0 +1,121 @@
+package com.infomedia.abacox.users.component.session.store;
+
+import com.infomedia.abacox.users.dto.login.ActiveSessionCountDto;
+import com.infomedia.abacox.users.entity.ActiveSession;
+import com.infomedia.abacox.users.entity.Login;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where session (login) state lives. LoginService goes through this interface for creating, validating,
+ * closing and expiring sessions, and the implementation is picked with auth.session-store.type:
+ * {@code jpa} (default, {@link JpaSessionStore}) or {@code memory} ({@link InMemorySessionStore}).
+ *
+ * Implementations are called from inside LoginService transactions; stores that aren't backed by the
+ * database apply their changes immediately, even if that transaction later rolls back.
+ */
+public interface SessionStore {
+
+    Login create(UUID userId, String token, String tokenDigest, LocalDateTime loginDate, LocalDateTime expirationDate);
+
+    /**
+     * Same as {@link #create}, but the store may persist the session after returning.
+     */
+    default Login createDeferred(UUID userId, String token, String tokenDigest, LocalDateTime loginDate,
+                                 LocalDateTime expirationDate) {
+        return create(userId, token, tokenDigest, loginDate, expirationDate);
+    }
+
+    Optional<Login> findById(UUID id);
+
+    Optional<Login> findOpenByTokenDigest(String tokenDigest);
+
+    /**
+     * Finds an open, unexpired session of an active user by refresh token digest, with its user and role loaded.
+     */
+    Optional<Login> findActiveByTokenDigest(String tokenDigest, LocalDateTime currentTime);
+
+    /**
+     * @return the expiration date of the session if it is open and unexpired
+     */
+    Optional<LocalDateTime> findValidExpiration(UUID id, LocalDateTime currentTime);
+
+    /**
+     * Batch variant of {@link #findValidExpiration}.
+     *
+     * @return the expiration dates of the open and unexpired sessions among the ids
+     */
+    Map<UUID, LocalDateTime> findValidExpirations(Collection<UUID> ids, LocalDateTime currentTime);
+
+    /**
+     * Sets the logout date of a session.
+     *
+     * @return the closed session
+     */
+    Login close(Login login, LocalDateTime logoutDate);
+
+    /**
+     * Closes every open session of the user.
+     *
+     * @return the expiration dates of the sessions closed, by id
+     */
+    Map<UUID, LocalDateTime> closeAllByUser(UUID userId, LocalDateTime logoutDate);
+
+    /**
+     * Closes the next chunk of expired but still open sessions after the given id, setting their logout
+     * date to their expiration date.
+     *
+     * @return the ids closed, in id order
+     */
+    List<UUID> expireChunk(UUID afterId, LocalDateTime currentTime, int limit);
+
+    /**
+     * Finds the sessions logged out at or after the given date, expired sessions closed by the sweeper aside.
+     *
+     * @return the expiration dates of the sessions, by id
+     */
+    Map<UUID, LocalDateTime> findLoggedOutSince(LocalDateTime since);
+
+    /**
+     * Sets the last activity of the sessions, unless the stored value is already more recent.
+     */
+    void recordActivity(Map<UUID, LocalDateTime> lastActivity);
+
+    Page<Login> find(Specification<Login> specification, Pageable pageable);
+
+    /**
+     * Lists the open, unexpired sessions, with their user and role loaded.
+     *
+     * @param userId only sessions of this user, or null for any
+     * @param roleId only sessions of users with this role, or null for any
+     */
+    Page<ActiveSession> findActive(UUID userId, UUID roleId, LocalDateTime currentTime, Pageable pageable);
+
+    /**
+     * Counts the open, unexpired sessions, with the same filters as {@link #findActive}.
+     */
+    long countActive(UUID userId, UUID roleId, LocalDateTime currentTime);
+
+    /**
+     * Counts the open, unexpired sessions of each user that has any, most sessions first, with the same
+     * filters as {@link #findActive}.
+     */
+    List<ActiveSessionCountDto> countActivePerUser(UUID userId, UUID roleId, LocalDateTime currentTime);
+
+    /**
+     * Indexes open sessions that were created before the store kept an index of them.
+     *
+     * @return the number of sessions added
+     */
+    default int backfillActive(LocalDateTime currentTime) {
+        return 0;
+    }
+}
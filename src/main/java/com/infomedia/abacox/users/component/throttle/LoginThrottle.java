@@ -0,0 +1,107 @@
+package com.infomedia.abacox.users.component.throttle;
+
+import com.infomedia.abacox.users.component.configmanager.ConfigKey;
+import com.infomedia.abacox.users.component.configmanager.ConfigService;
+import com.infomedia.abacox.users.exception.TooManyAttemptsException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory throttling of login attempts, checked before any database access or password hashing.
+ *
+ * Every attempt counts against the client IP, failed attempts count against the username. Both limits
+ * apply over a sliding window, and are read from {@link ConfigKey} and updated at runtime; a limit of 0
+ * disables that check. Counters are per instance.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class LoginThrottle {
+
+    private static final String MSG_TOO_MANY_ATTEMPTS = "Too many login attempts, try again later";
+
+    private final ConfigService configService;
+
+    @Value("${auth.login-throttle.stripes:64}")
+    private int stripes;
+
+    @Value("${auth.login-throttle.max-keys:100000}")
+    private int maxKeys;
+
+    private volatile int maxAttemptsPerIp;
+    private volatile int maxFailuresPerUsername;
+    private SlidingWindowCounter attemptsByIp;
+    private SlidingWindowCounter failuresByUsername;
+
+    @PostConstruct
+    public void init() {
+        long windowMillis = windowMillis(configService.getValue(ConfigKey.LOGIN_THROTTLE_WINDOW).asLong());
+        attemptsByIp = new SlidingWindowCounter(stripes, maxKeys, windowMillis);
+        failuresByUsername = new SlidingWindowCounter(stripes, maxKeys, windowMillis);
+        maxAttemptsPerIp = configService.getValue(ConfigKey.LOGIN_MAX_ATTEMPTS_PER_IP).asInt();
+        maxFailuresPerUsername = configService.getValue(ConfigKey.LOGIN_MAX_FAILURES_PER_USERNAME).asInt();
+
+        configService.registerUpdateCallback(ConfigKey.LOGIN_THROTTLE_WINDOW, v -> {
+            attemptsByIp.setWindowMillis(windowMillis(v.asLong()));
+            failuresByUsername.setWindowMillis(windowMillis(v.asLong()));
+        });
+        configService.registerUpdateCallback(ConfigKey.LOGIN_MAX_ATTEMPTS_PER_IP, v -> maxAttemptsPerIp = v.asInt());
+        configService.registerUpdateCallback(ConfigKey.LOGIN_MAX_FAILURES_PER_USERNAME, v -> maxFailuresPerUsername = v.asInt());
+    }
+
+    /**
+     * Records a login attempt from the IP and rejects it if the IP or the username is over its limit.
+     *
+     * @throws TooManyAttemptsException if the attempt must be rejected
+     */
+    public void checkAttempt(String username, String clientIp) {
+        long now = System.currentTimeMillis();
+        int maxFailures = maxFailuresPerUsername;
+        if (maxFailures > 0 && failuresByUsername.count(username, now) >= maxFailures) {
+            log.debug("Login throttled for username '{}'", username);
+            throw new TooManyAttemptsException(MSG_TOO_MANY_ATTEMPTS, retryAfterSeconds());
+        }
+        int maxAttempts = maxAttemptsPerIp;
+        if (maxAttempts > 0 && clientIp != null && !attemptsByIp.tryAcquire(clientIp, maxAttempts, now)) {
+            log.debug("Login throttled for client {}", clientIp);
+            throw new TooManyAttemptsException(MSG_TOO_MANY_ATTEMPTS, retryAfterSeconds());
+        }
+    }
+
+    public void recordFailure(String username) {
+        if (maxFailuresPerUsername > 0) {
+            failuresByUsername.record(username, System.currentTimeMillis());
+        }
+    }
+
+    public void recordSuccess(String username) {
+        failuresByUsername.reset(username);
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void purgeStale() {
+        long now = System.currentTimeMillis();
+        attemptsByIp.purgeStale(now);
+        failuresByUsername.purgeStale(now);
+    }
+
+    /**
+     * Windows under a second are stored values that predate validation, they are raised to one second
+     * instead of failing startup.
+     */
+    private long windowMillis(Long windowSeconds) {
+        if (windowSeconds == null || windowSeconds < 1) {
+            log.warn("Invalid {} '{}', using 1 second", ConfigKey.LOGIN_THROTTLE_WINDOW.getKey(), windowSeconds);
+            return 1000;
+        }
+        return windowSeconds * 1000;
+    }
+
+    private long retryAfterSeconds() {
+        return Math.max(1, attemptsByIp.getWindowMillis() / 1000);
+    }
+}
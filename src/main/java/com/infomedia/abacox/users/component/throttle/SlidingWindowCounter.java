@@ -0,0 +1,191 @@
+package com.infomedia.abacox.users.component.throttle;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Per-key event counter over a sliding time window, approximated with the counts of the current and
+ * the previous fixed window: the previous count is weighted by how much of it still overlaps the sliding
+ * window. That needs two ints per key and is accurate enough for throttling.
+ *
+ * Keys are spread over lock stripes, so contention is limited to keys sharing a stripe. The number of
+ * tracked keys is bounded; when a new key arrives at a full stripe without stale keys, the key with the
+ * lowest count is evicted. Flooding the counter with new keys therefore only displaces keys with as few
+ * events as the flood's own, never the keys close to their limit.
+ */
+public class SlidingWindowCounter {
+
+    private static final class Window {
+        private long index;
+        private int current;
+        private int previous;
+    }
+
+    private static final class Stripe {
+        private final Map<String, Window> windows = new HashMap<>();
+    }
+
+    private final Stripe[] stripes;
+    private final int maxKeysPerStripe;
+    private volatile long windowMillis;
+
+    public SlidingWindowCounter(int stripeCount, int maxKeys, long windowMillis) {
+        if (stripeCount <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("Stripe count and max keys must be positive");
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.maxKeysPerStripe = Math.max(1, maxKeys / stripeCount);
+        setWindowMillis(windowMillis);
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * @return the estimated number of events for the key in the sliding window ending now
+     */
+    public int count(String key, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Window window = stripe.windows.get(key);
+            return window == null ? 0 : estimate(window, now);
+        }
+    }
+
+    /**
+     * Records an event for the key if the estimated count is below the limit.
+     *
+     * @return true if the event was recorded, false if the key is over the limit
+     */
+    public boolean tryAcquire(String key, int limit, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Window window = windowFor(stripe, key, now);
+            if (estimate(window, now) >= limit) {
+                return false;
+            }
+            window.current++;
+            return true;
+        }
+    }
+
+    /**
+     * Records an event for the key regardless of any limit.
+     */
+    public void record(String key, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            windowFor(stripe, key, now).current++;
+        }
+    }
+
+    public void reset(String key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.windows.remove(key);
+        }
+    }
+
+    /**
+     * Drops keys with no events in the current or previous window.
+     *
+     * @return the number of keys removed
+     */
+    public int purgeStale(long now) {
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                removed += purgeStale(stripe, now / windowMillis);
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.windows.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    /**
+     * Returns the key's window rolled forward to now, creating it if needed. Caller holds the stripe lock.
+     */
+    private Window windowFor(Stripe stripe, String key, long now) {
+        long index = now / windowMillis;
+        Window window = stripe.windows.get(key);
+        if (window == null) {
+            if (stripe.windows.size() >= maxKeysPerStripe && purgeStale(stripe, index) == 0) {
+                evictLowest(stripe, now);
+            }
+            window = new Window();
+            window.index = index;
+            stripe.windows.put(key, window);
+            return window;
+        }
+        roll(window, index);
+        return window;
+    }
+
+    private void evictLowest(Stripe stripe, long now) {
+        String lowestKey = null;
+        int lowest = Integer.MAX_VALUE;
+        for (Map.Entry<String, Window> entry : stripe.windows.entrySet()) {
+            int count = estimate(entry.getValue(), now);
+            if (count < lowest) {
+                lowest = count;
+                lowestKey = entry.getKey();
+            }
+        }
+        stripe.windows.remove(lowestKey);
+    }
+
+    private int estimate(Window window, long now) {
+        long index = now / windowMillis;
+        roll(window, index);
+        double elapsedFraction = (double) (now % windowMillis) / windowMillis;
+        return (int) (window.previous * (1 - elapsedFraction)) + window.current;
+    }
+
+    private static void roll(Window window, long index) {
+        if (window.index == index) {
+            return;
+        }
+        window.previous = window.index == index - 1 ? window.current : 0;
+        window.current = 0;
+        window.index = index;
+    }
+
+    private static int purgeStale(Stripe stripe, long index) {
+        int removed = 0;
+        Iterator<Window> iterator = stripe.windows.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().index < index - 1) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+}
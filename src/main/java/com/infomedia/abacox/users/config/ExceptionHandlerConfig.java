@@ -6,6 +6,8 @@ import com.infomedia.abacox.users.exception.ResourceAlreadyExistsException;
 import com.infomedia.abacox.users.exception.ResourceDeletionException;
 import com.infomedia.abacox.users.exception.ResourceDisabledException;
 import com.infomedia.abacox.users.exception.ResourceNotFoundException;
+import com.infomedia.abacox.users.exception.ServiceOverloadedException;
+import com.infomedia.abacox.users.exception.TooManyAttemptsException;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.ValidationException;
@@ -69,6 +71,28 @@ public class ExceptionHandlerConfig extends ResponseEntityExceptionHandler {
         return problemDetail;
     }
 
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ProblemDetail> handleServiceOverloadedException(ServiceOverloadedException ex) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+        problemDetail.setTitle("Service Overloaded");
+        problemDetail.setType(URI.create("service-overloaded"));
+        problemDetail.setProperty("timestamp", LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(problemDetail);
+    }
+
+    @ExceptionHandler(TooManyAttemptsException.class)
+    public ResponseEntity<ProblemDetail> handleTooManyAttemptsException(TooManyAttemptsException ex) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage());
+        problemDetail.setTitle("Too Many Attempts");
+        problemDetail.setType(URI.create("too-many-attempts"));
+        problemDetail.setProperty("timestamp", LocalDateTime.now());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(problemDetail);
+    }
+
     @ExceptionHandler(SecurityException.class)
     public ProblemDetail handleSecurityException(SecurityException ex) {
         ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.FORBIDDEN, ex.getMessage());
@@ -1,17 +1,33 @@
 package com.infomedia.abacox.users.controller;
 
 import com.infomedia.abacox.users.component.configmanager.ConfigService;
+import com.infomedia.abacox.users.component.jwt.InvalidJwtTokenException;
+import com.infomedia.abacox.users.component.jwt.TokenDigest;
 import com.infomedia.abacox.users.component.modeltools.ModelConverter;
 import com.infomedia.abacox.users.dto.auth.TokenRequestDto;
 import com.infomedia.abacox.users.dto.auth.TokenResultDto;
+import com.infomedia.abacox.users.dto.auth.JwtTokenBatchDto;
 import com.infomedia.abacox.users.dto.auth.JwtTokenDto;
+import com.infomedia.abacox.users.dto.auth.TokenIntrospectionDto;
+import com.infomedia.abacox.users.dto.auth.TokenValidationResultDto;
 import com.infomedia.abacox.users.dto.user.UserDto;
 import com.infomedia.abacox.users.service.AuthService;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RequiredArgsConstructor
 @RestController
@@ -23,10 +39,16 @@ public class AuthController {
     private final ModelConverter modelConverter;
     private final ConfigService configService;
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @Value("${auth.introspection.max-age:30}")
+    private long introspectionMaxAge;
+
 
     @PostMapping(value = "/token", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public TokenResultDto token(@Valid @RequestBody TokenRequestDto tokenRequestDto) {
-        return authService.token(tokenRequestDto);
+    public TokenResultDto token(@Valid @RequestBody TokenRequestDto tokenRequestDto, HttpServletRequest request) {
+        // Resolved from the forwarded headers, see server.forward-headers-strategy
+        return authService.token(tokenRequestDto, request.getRemoteAddr());
     }
 
     @PostMapping(value = "/refresh", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -36,12 +58,58 @@ public class AuthController {
 
     @PostMapping(value = "/validateAccessToken", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public UserDto validateAccessToken(@Valid @RequestBody JwtTokenDto dto){
-        return modelConverter.map(authService.validateAccessToken(dto.getToken()), UserDto.class);
+        return authService.validateAccessToken(dto.getToken()).user();
+    }
+
+    /**
+     * Compact validation of the bearer access token. Successful responses may be reused by HTTP caches for
+     * auth.introspection.max-age seconds, never past the token's expiration, and carry an ETag so repeat
+     * validations can be answered with 304.
+     */
+    @GetMapping(value = "/introspect", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<TokenIntrospectionDto> introspect(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization
+            , WebRequest request){
+        if (!authorization.startsWith(BEARER_PREFIX)) {
+            throw new InvalidJwtTokenException("Invalid token format");
+        }
+        String token = authorization.substring(BEARER_PREFIX.length()).trim();
+        TokenIntrospectionDto introspection = authService.introspectAccessToken(token);
+
+        long maxAge = Math.min(introspectionMaxAge, introspection.getExp() - System.currentTimeMillis() / 1000);
+        CacheControl cacheControl = maxAge > 0
+                ? CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePublic()
+                : CacheControl.noStore();
+        // The body is derived from the token's claims only, so the token digest identifies it
+        String etag = "\"" + TokenDigest.of(token).toHex() + "\"";
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.AUTHORIZATION)
+                    .eTag(etag)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.AUTHORIZATION)
+                .eTag(etag)
+                .body(introspection);
+    }
+
+    @PostMapping(value = "/validateAccessTokens", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<TokenValidationResultDto> validateAccessTokens(@Valid @RequestBody JwtTokenBatchDto dto){
+        return authService.validateAccessTokens(dto.getTokens());
     }
 
     @PostMapping(value = "/validateDownloadToken", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public UserDto validateDownloadToken(@Valid @RequestBody JwtTokenDto dto){
-        return modelConverter.map(authService.validateDownloadToken(dto.getToken()), UserDto.class);
+        return authService.validateDownloadToken(dto.getToken()).user();
+    }
+
+    @GetMapping(value = "/jwks", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> jwks(){
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                .body(authService.getJwks());
     }
 
     @PostMapping(value = "/invalidate", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
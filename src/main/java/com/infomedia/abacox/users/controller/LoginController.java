@@ -3,9 +3,13 @@ package com.infomedia.abacox.users.controller;
 import com.infomedia.abacox.users.component.export.excel.ParseUtils;
 import com.infomedia.abacox.users.component.modeltools.ModelConverter;
 import com.infomedia.abacox.users.dto.generic.UUIDBody;
+import com.infomedia.abacox.users.dto.login.ActiveSessionCountDto;
+import com.infomedia.abacox.users.dto.login.ActiveSessionDto;
 import com.infomedia.abacox.users.dto.login.LoginDto;
 import com.infomedia.abacox.users.entity.Login;
+import com.infomedia.abacox.users.entity.LoginArchive;
 import com.infomedia.abacox.users.entity.Role;
+import com.infomedia.abacox.users.service.LoginArchiveService;
 import com.infomedia.abacox.users.service.LoginService;
 import com.turkraft.springfilter.boot.Filter;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -38,6 +42,7 @@ import java.util.UUID;
 public class LoginController {
 
     private final LoginService loginService;
+    private final LoginArchiveService loginArchiveService;
     private final ModelConverter modelConverter;
 
     @GetMapping(value = "{id}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -53,6 +58,35 @@ public class LoginController {
         return modelConverter.mapPage(loginService.find(spec, pageable), LoginDto.class);
     }
 
+    @GetMapping(value = "/archive", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Page<LoginDto> findArchived(@Parameter(hidden = true) @Filter Specification<LoginArchive> spec
+            , @Parameter(hidden = true) Pageable pageable
+            , @RequestParam(required = false) String filter, @RequestParam(required = false) Integer page
+            , @RequestParam(required = false) Integer size, @RequestParam(required = false) String sort) {
+        return modelConverter.mapPage(loginArchiveService.find(spec, pageable), LoginDto.class);
+    }
+
+    @GetMapping(value = "/active", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Page<ActiveSessionDto> findActive(@RequestParam(required = false) UUID userId
+            , @RequestParam(required = false) UUID roleId
+            , @Parameter(hidden = true) Pageable pageable
+            , @RequestParam(required = false) Integer page, @RequestParam(required = false) Integer size
+            , @RequestParam(required = false) String sort) {
+        return modelConverter.mapPage(loginService.findActiveSessions(userId, roleId, pageable), ActiveSessionDto.class);
+    }
+
+    @GetMapping(value = "/active/count", produces = MediaType.APPLICATION_JSON_VALUE)
+    public long countActive(@RequestParam(required = false) UUID userId
+            , @RequestParam(required = false) UUID roleId) {
+        return loginService.countActiveSessions(userId, roleId);
+    }
+
+    @GetMapping(value = "/active/countByUser", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<ActiveSessionCountDto> countActiveByUser(@RequestParam(required = false) UUID userId
+            , @RequestParam(required = false) UUID roleId) {
+        return loginService.countActiveSessionsPerUser(userId, roleId);
+    }
+
     @PostMapping(value = "invalidate", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public LoginDto invalidate(@Valid @RequestBody UUIDBody body) {
         return modelConverter.map(loginService.registerLogout(body.getId()), LoginDto.class);
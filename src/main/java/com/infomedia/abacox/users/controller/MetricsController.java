@@ -0,0 +1,50 @@
+package com.infomedia.abacox.users.controller;
+
+import com.infomedia.abacox.users.dto.metrics.BloomFilterStatsDto;
+import com.infomedia.abacox.users.dto.metrics.CacheStatsDto;
+import com.infomedia.abacox.users.dto.metrics.PasswordVerificationStatsDto;
+import com.infomedia.abacox.users.dto.metrics.SessionSweeperStatsDto;
+import com.infomedia.abacox.users.service.MetricsService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.security.SecurityRequirements;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@RestController
+@Tag(name = "Metrics", description = "Metrics controller")
+@SecurityRequirements({
+        @SecurityRequirement(name = "JWT_Token"),
+        @SecurityRequirement(name = "Username")
+})
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final MetricsService metricsService;
+
+    @GetMapping(value = "/caches", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<CacheStatsDto> getCacheStats() {
+        return metricsService.getCacheStats();
+    }
+
+    @GetMapping(value = "/passwordVerification", produces = MediaType.APPLICATION_JSON_VALUE)
+    public PasswordVerificationStatsDto getPasswordVerificationStats() {
+        return metricsService.getPasswordVerificationStats();
+    }
+
+    @GetMapping(value = "/sessionSweeper", produces = MediaType.APPLICATION_JSON_VALUE)
+    public SessionSweeperStatsDto getSessionSweeperStats() {
+        return metricsService.getSessionSweeperStats();
+    }
+
+    @GetMapping(value = "/usernameFilter", produces = MediaType.APPLICATION_JSON_VALUE)
+    public BloomFilterStatsDto getUsernameFilterStats() {
+        return metricsService.getUsernameFilterStats();
+    }
+}
@@ -0,0 +1,23 @@
+package com.infomedia.abacox.users.dto.auth;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class JwtTokenBatchDto {
+    @Schema(description = "tokens a validar, los resultados se devuelven en el mismo orden")
+    @NotEmpty
+    @Size(max = 500)
+    private List<@NotBlank String> tokens;
+}
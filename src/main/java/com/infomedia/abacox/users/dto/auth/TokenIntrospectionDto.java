@@ -0,0 +1,28 @@
+package com.infomedia.abacox.users.dto.auth;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class TokenIntrospectionDto {
+    @Schema(description = "id del usuario", example = "d290f1ee-6c54-4b01-90e6-d701748f0851")
+    private UUID userId;
+    @Schema(description = "nombre de usuario", example = "admin")
+    private String username;
+    @Schema(description = "id del rol", example = "d290f1ee-6c54-4b01-90e6-d701748f0851")
+    private UUID roleId;
+    @Schema(description = "nombre del rol", example = "admin")
+    private String rolename;
+    @Schema(description = "indica si el usuario esta activo", example = "true")
+    private boolean active;
+    @Schema(description = "expiracion del token en segundos desde epoch", example = "1735689600")
+    private long exp;
+}
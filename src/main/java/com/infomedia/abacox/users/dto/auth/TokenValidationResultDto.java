@@ -0,0 +1,21 @@
+package com.infomedia.abacox.users.dto.auth;
+
+import com.infomedia.abacox.users.dto.user.UserDto;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class TokenValidationResultDto {
+    @Schema(description = "indica si el token es valido", example = "true")
+    private boolean valid;
+    @Schema(description = "usuario del token, solo si es valido", implementation = UserDto.class)
+    private UserDto user;
+    @Schema(description = "motivo del rechazo, solo si no es valido", example = "Invalid token")
+    private String error;
+}
@@ -12,4 +12,9 @@ import lombok.experimental.SuperBuilder;
 public class ConfigurationDto {
     private Boolean singleSession;
     private Integer sessionMaxAge;
+    private Integer sessionIdleTimeout;
+    private Integer loginRetentionDays;
+    private Integer loginThrottleWindow;
+    private Integer loginMaxAttemptsPerIp;
+    private Integer loginMaxFailuresPerUsername;
 }
\ No newline at end of file
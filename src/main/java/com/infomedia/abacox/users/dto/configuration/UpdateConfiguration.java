@@ -1,6 +1,7 @@
 package com.infomedia.abacox.users.dto.configuration;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -18,4 +19,25 @@ public class UpdateConfiguration {
     @NotNull
     @Schema(description = "maximum session age in seconds", example = "43200")
     private JsonNullable<Integer> sessionMaxAge = JsonNullable.undefined();
+
+    @NotNull
+    @Schema(description = "seconds without activity after which a session can no longer be refreshed, 0 disables the timeout", example = "3600")
+    private JsonNullable<Integer> sessionIdleTimeout = JsonNullable.undefined();
+
+    @NotNull
+    @Schema(description = "days closed sessions stay in the login table before being archived, 0 disables archiving", example = "90")
+    private JsonNullable<Integer> loginRetentionDays = JsonNullable.undefined();
+
+    @NotNull
+    @Min(1)
+    @Schema(description = "sliding window in seconds used to throttle login attempts", example = "300")
+    private JsonNullable<Integer> loginThrottleWindow = JsonNullable.undefined();
+
+    @NotNull
+    @Schema(description = "maximum login attempts per client IP within the window, 0 disables the limit", example = "100")
+    private JsonNullable<Integer> loginMaxAttemptsPerIp = JsonNullable.undefined();
+
+    @NotNull
+    @Schema(description = "maximum failed logins per username within the window, 0 disables the limit", example = "10")
+    private JsonNullable<Integer> loginMaxFailuresPerUsername = JsonNullable.undefined();
 }
\ No newline at end of file
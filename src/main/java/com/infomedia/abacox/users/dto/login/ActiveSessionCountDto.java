@@ -0,0 +1,22 @@
+package com.infomedia.abacox.users.dto.login;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class ActiveSessionCountDto {
+    @Schema(description = "id del usuario", example = "123e4567-e89b-12d3-a456-426614174000")
+    private UUID userId;
+    @Schema(description = "nombre de usuario", example = "admin")
+    private String username;
+    @Schema(description = "sesiones abiertas del usuario", example = "2")
+    private Long sessions;
+}
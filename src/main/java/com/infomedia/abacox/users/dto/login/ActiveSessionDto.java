@@ -0,0 +1,26 @@
+package com.infomedia.abacox.users.dto.login;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.infomedia.abacox.users.constants.DateTimePattern;
+import com.infomedia.abacox.users.dto.user.UserDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * DTO for {@link com.infomedia.abacox.users.entity.ActiveSession}
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActiveSessionDto {
+    private UUID id;
+    private UserDto user;
+    @JsonFormat(pattern = DateTimePattern.DATE_TIME)
+    private LocalDateTime loginDate;
+    @JsonFormat(pattern = DateTimePattern.DATE_TIME)
+    private LocalDateTime expirationDate;
+}
@@ -27,4 +27,6 @@ public class LoginDto {
     private LocalDateTime expirationDate;
     @JsonFormat(pattern = DateTimePattern.DATE_TIME)
     private LocalDateTime logoutDate;
+    @JsonFormat(pattern = DateTimePattern.DATE_TIME)
+    private LocalDateTime lastActivity;
 }
\ No newline at end of file
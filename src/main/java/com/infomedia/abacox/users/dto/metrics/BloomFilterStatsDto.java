@@ -0,0 +1,36 @@
+package com.infomedia.abacox.users.dto.metrics;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class BloomFilterStatsDto {
+    @Schema(description = "nombre del filtro", example = "usernames")
+    private String name;
+    @Schema(description = "indica si el filtro esta construido y en uso", example = "true")
+    private boolean ready;
+    @Schema(description = "elementos para los que esta dimensionado", example = "20000")
+    private long expectedInsertions;
+    @Schema(description = "tamaño en bits", example = "191744")
+    private long bitSize;
+    @Schema(description = "numero de funciones hash", example = "7")
+    private int hashFunctions;
+    @Schema(description = "memoria ocupada en bytes", example = "23968")
+    private long memoryBytes;
+    @Schema(description = "tasa de falsos positivos esperada segun el llenado actual", example = "0.0001")
+    private double expectedFalsePositiveRate;
+    @Schema(description = "consultas al filtro", example = "50000")
+    private long lookups;
+    @Schema(description = "consultas descartadas sin acceder a la base de datos", example = "30000")
+    private long rejections;
+    @Schema(description = "falsos positivos observados", example = "2")
+    private long falsePositives;
+    @Schema(description = "tasa de falsos positivos observada", example = "0.0001")
+    private double observedFalsePositiveRate;
+}
@@ -0,0 +1,28 @@
+package com.infomedia.abacox.users.dto.metrics;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class CacheStatsDto {
+    @Schema(description = "nombre de la cache", example = "sessionValidity")
+    private String name;
+    @Schema(description = "entradas actuales", example = "1500")
+    private int size;
+    @Schema(description = "entradas maximas", example = "100000")
+    private int maxSize;
+    @Schema(description = "aciertos", example = "98000")
+    private long hits;
+    @Schema(description = "fallos", example = "2000")
+    private long misses;
+    @Schema(description = "tasa de aciertos", example = "0.98")
+    private double hitRate;
+    @Schema(description = "entradas desalojadas", example = "0")
+    private long evictions;
+}
@@ -0,0 +1,36 @@
+package com.infomedia.abacox.users.dto.metrics;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class PasswordVerificationStatsDto {
+    @Schema(description = "hilos del pool de verificacion", example = "8")
+    private int threads;
+    @Schema(description = "hilos ocupados", example = "3")
+    private int active;
+    @Schema(description = "capacidad de la cola", example = "64")
+    private int queueCapacity;
+    @Schema(description = "tareas en cola", example = "0")
+    private int queueDepth;
+    @Schema(description = "maximo de verificaciones en curso o en cola", example = "16")
+    private int maxInFlight;
+    @Schema(description = "verificaciones en curso o en cola", example = "3")
+    private int inFlight;
+    @Schema(description = "verificaciones completadas", example = "12000")
+    private long completed;
+    @Schema(description = "verificaciones rechazadas por saturacion", example = "0")
+    private long rejected;
+    @Schema(description = "latencia media de hash en milisegundos", example = "85.3")
+    private double averageHashMillis;
+    @Schema(description = "latencia maxima de hash en milisegundos", example = "140.2")
+    private double maxHashMillis;
+    @Schema(description = "espera media en cola en milisegundos", example = "1.2")
+    private double averageQueueWaitMillis;
+}
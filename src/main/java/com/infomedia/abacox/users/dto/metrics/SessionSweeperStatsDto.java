@@ -0,0 +1,37 @@
+package com.infomedia.abacox.users.dto.metrics;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.infomedia.abacox.users.constants.DateTimePattern;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder(toBuilder = true)
+public class SessionSweeperStatsDto {
+    @Schema(description = "indica si hay un barrido en curso", example = "false")
+    private boolean running;
+    @JsonFormat(pattern = DateTimePattern.DATE_TIME)
+    @Schema(description = "inicio del ultimo barrido", example = "2021-08-01T00:00:00")
+    private LocalDateTime lastRunStart;
+    @Schema(description = "duracion del ultimo barrido en milisegundos", example = "120")
+    private long lastRunDurationMillis;
+    @Schema(description = "sesiones cerradas en el ultimo barrido", example = "1000")
+    private long lastRunSessions;
+    @Schema(description = "bloques procesados en el ultimo barrido", example = "1")
+    private int lastRunChunks;
+    @Schema(description = "indica si el ultimo barrido agoto su presupuesto de tiempo", example = "false")
+    private boolean lastRunBudgetExhausted;
+    @Schema(description = "barridos ejecutados", example = "288")
+    private long totalRuns;
+    @Schema(description = "sesiones cerradas en total", example = "50000")
+    private long totalSessions;
+    @Schema(description = "sesiones archivadas en total", example = "100000")
+    private long totalArchived;
+}
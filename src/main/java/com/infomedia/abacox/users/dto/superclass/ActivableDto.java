@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@SuperBuilder
+@SuperBuilder(toBuilder = true)
 public class ActivableDto {
     @JsonFormat(pattern = DateTimePattern.DATE_TIME)
     @Schema(description = "fecha de creación", example = "2021-08-01T00:00:00")
@@ -0,0 +1,41 @@
+package com.infomedia.abacox.users.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Open sessions only, keyed by login id. A row is inserted with its {@link Login} and deleted when the login
+ * is closed or expired by the sweeper, in the same transaction, so lookups of open sessions read this small
+ * table instead of filtering the login history on logout_date. Rows whose expiration passed but weren't swept
+ * yet are filtered out by the queries.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@SuperBuilder(toBuilder = true)
+@Entity
+@Table(name = "active_session", indexes = {
+        @Index(name = "idx_active_session_user_id", columnList = "user_id")
+})
+public class ActiveSession {
+    @Id
+    @Column(name = "id", nullable = false)
+    private UUID id;
+
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "login_date", nullable = false)
+    private LocalDateTime loginDate;
+
+    @Column(name = "expiration_date", nullable = false)
+    private LocalDateTime expirationDate;
+}
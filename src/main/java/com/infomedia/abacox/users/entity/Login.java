@@ -14,7 +14,11 @@ import java.util.UUID;
 @AllArgsConstructor
 @SuperBuilder(toBuilder = true)
 @Entity
-@Table(name = "login")
+@Table(name = "login", indexes = {
+        @Index(name = "idx_login_user_id", columnList = "user_id"),
+        @Index(name = "idx_login_expiration_date", columnList = "expiration_date"),
+        @Index(name = "idx_login_logout_date", columnList = "logout_date")
+})
 public class Login {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -29,6 +33,13 @@ public class Login {
     @Column(name = "token", nullable = false, length = 2048)
     private String token;
 
+    /**
+     * Hex encoded SHA-256 of the refresh token. All lookups by token go through this indexed,
+     * fixed-width column instead of comparing the full token.
+     */
+    @Column(name = "token_digest", length = 64, unique = true)
+    private String tokenDigest;
+
     @Column(name = "login_date", nullable = false)
     private LocalDateTime loginDate;
 
@@ -37,4 +48,11 @@ public class Login {
 
     @Column(name = "logout_date")
     private LocalDateTime logoutDate;
+
+    /**
+     * Last time the session was used, written in batches by SessionActivityTracker, so it can lag behind
+     * by up to one flush interval. Null until the session is first used after login.
+     */
+    @Column(name = "last_activity")
+    private LocalDateTime lastActivity;
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.infomedia.abacox.users.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Closed sessions moved out of the login table once they are older than the configured retention.
+ * Mirrors {@link Login} so archived history can be searched with the same filters.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@SuperBuilder(toBuilder = true)
+@Entity
+@Table(name = "login_archive", indexes = {
+        @Index(name = "idx_login_archive_user_id", columnList = "user_id"),
+        @Index(name = "idx_login_archive_login_date", columnList = "login_date")
+})
+public class LoginArchive {
+    @Id
+    @Column(name = "id", nullable = false)
+    private UUID id;
+
+    @ToString.Exclude
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "token", nullable = false, length = 2048)
+    private String token;
+
+    @Column(name = "token_digest", length = 64)
+    private String tokenDigest;
+
+    @Column(name = "login_date", nullable = false)
+    private LocalDateTime loginDate;
+
+    @Column(name = "expiration_date", nullable = false)
+    private LocalDateTime expirationDate;
+
+    @Column(name = "logout_date")
+    private LocalDateTime logoutDate;
+
+    @Column(name = "last_activity")
+    private LocalDateTime lastActivity;
+
+    @Column(name = "archived_date", nullable = false)
+    private LocalDateTime archivedDate;
+}
@@ -0,0 +1,45 @@
+package com.infomedia.abacox.users.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+
+/**
+ * Asymmetric key pair used to sign tokens when an asymmetric signing algorithm is configured.
+ * The private key is stored encrypted with auth.jwt.encryption-key, the public key is published
+ * through the JWKS endpoint until every token it signed has expired.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@SuperBuilder(toBuilder = true)
+@Entity
+@Table(name = "signing_key")
+public class SigningKey {
+    @Id
+    @Column(name = "kid", nullable = false, length = 64)
+    private String kid;
+
+    @Column(name = "algorithm", nullable = false, length = 10)
+    private String algorithm;
+
+    @Column(name = "public_key", nullable = false, length = 1024)
+    private String publicKey;
+
+    @ToString.Exclude
+    @Column(name = "private_key", nullable = false, length = 2048)
+    private String privateKey;
+
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+
+    /**
+     * When the key stopped being used to sign, null while it is the active key.
+     */
+    @Column(name = "retired_date")
+    private LocalDateTime retiredDate;
+}
@@ -17,7 +17,7 @@ import java.util.UUID;
 @AllArgsConstructor
 @SuperBuilder(toBuilder = true)
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_last_modified_date", columnList = "last_modified_date"))
 public class User extends ActivableEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -58,4 +58,13 @@ public class User extends ActivableEntity {
     @Enumerated(EnumType.STRING)
     @Column(name = "password_encoder", length = 20)
     private PasswordEncodingAlgorithm passwordEncoder;
+
+    /**
+     * Monotonic counter embedded in issued tokens. Bumping it revokes every token issued before.
+     * It is never written by entity updates, only by UserRepository.incrementSessionEpoch, so a
+     * concurrent save of a stale entity can't roll it back.
+     */
+    @Builder.Default
+    @Column(name = "session_epoch", nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long sessionEpoch = 0;
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.infomedia.abacox.users.repository;
+
+import com.infomedia.abacox.users.dto.login.ActiveSessionCountDto;
+import com.infomedia.abacox.users.entity.ActiveSession;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Queries over the active_session table. User and role filters are optional, null matches any.
+ */
+public interface ActiveSessionRepository extends JpaRepository<ActiveSession, UUID> {
+
+    @Modifying
+    @Query(value = """
+        insert into active_session (id, user_id, login_date, expiration_date) values (?1, ?2, ?3, ?4)""", nativeQuery = true)
+    void insert(UUID id, UUID userId, LocalDateTime loginDate, LocalDateTime expirationDate);
+
+    /**
+     * Adds the open, unexpired logins missing from the table, for sessions opened before it existed.
+     */
+    @Modifying
+    @Query(value = """
+        insert into active_session (id, user_id, login_date, expiration_date)
+        select l.id, l.user_id, l.login_date, l.expiration_date from login l
+        where l.logout_date is null and l.expiration_date > ?1
+        on conflict (id) do nothing""", nativeQuery = true)
+    int backfill(LocalDateTime currentTime);
+
+    @Query("""
+        select a.id as id, a.expirationDate as expirationDate from ActiveSession a where a.user.id = ?1""")
+    List<LoginRepository.SessionExpiration> findByUserId(UUID userId);
+
+    @Modifying
+    @Query("""
+        delete from ActiveSession a where a.id in ?1""")
+    int deleteByIds(Collection<UUID> ids);
+
+    @Query(value = """
+        select a from ActiveSession a join fetch a.user u join fetch u.role r
+        where a.expirationDate > ?3 and (?1 is null or u.id = ?1) and (?2 is null or r.id = ?2)""",
+            countQuery = """
+        select count(a) from ActiveSession a join a.user u
+        where a.expirationDate > ?3 and (?1 is null or u.id = ?1) and (?2 is null or u.role.id = ?2)""")
+    Page<ActiveSession> findActive(UUID userId, UUID roleId, LocalDateTime currentTime, Pageable pageable);
+
+    @Query("""
+        select count(a) from ActiveSession a join a.user u
+        where a.expirationDate > ?3 and (?1 is null or u.id = ?1) and (?2 is null or u.role.id = ?2)""")
+    long countActive(UUID userId, UUID roleId, LocalDateTime currentTime);
+
+    @Query("""
+        select new com.infomedia.abacox.users.dto.login.ActiveSessionCountDto(u.id, u.username, count(a))
+        from ActiveSession a join a.user u
+        where a.expirationDate > ?3 and (?1 is null or u.id = ?1) and (?2 is null or u.role.id = ?2)
+        group by u.id, u.username order by count(a) desc, u.username""")
+    List<ActiveSessionCountDto> countActivePerUser(UUID userId, UUID roleId, LocalDateTime currentTime);
+}
@@ -0,0 +1,21 @@
+package com.infomedia.abacox.users.repository;
+
+import com.infomedia.abacox.users.entity.LoginArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+
+public interface LoginArchiveRepository extends JpaRepository<LoginArchive, UUID>, JpaSpecificationExecutor<LoginArchive> {
+
+    @Modifying
+    @Query(value = """
+        insert into login_archive (id, user_id, token, token_digest, login_date, expiration_date, logout_date, last_activity, archived_date)
+        select l.id, l.user_id, l.token, l.token_digest, l.login_date, l.expiration_date, l.logout_date, l.last_activity, ?2
+        from login l where l.id in (?1)""", nativeQuery = true)
+    int copyFromLogin(Collection<UUID> loginIds, LocalDateTime archivedDate);
+}
@@ -1,12 +1,14 @@
 package com.infomedia.abacox.users.repository;
 
 import com.infomedia.abacox.users.entity.Login;
-import com.infomedia.abacox.users.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,18 +16,75 @@ import java.util.UUID;
 public interface LoginRepository extends JpaRepository<Login, UUID>, JpaSpecificationExecutor<Login> {
 
 
-    Optional<Login> findByTokenAndLogoutDateIsNull(String token);
+    Optional<Login> findByTokenDigestAndLogoutDateIsNull(String tokenDigest);
 
-    List<Login> findByUserAndLogoutDateIsNull(User user);
+    @Query("""
+        select l.tokenDigest from Login l where l.tokenDigest in ?1""")
+    List<String> findExistingTokenDigests(Collection<String> tokenDigests);
+
+    List<Login> findByTokenDigestIsNull(Pageable pageable);
+
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        update Login l set l.logoutDate = ?2 where l.id in ?1 and l.logoutDate is null""")
+    int logoutByIds(Collection<UUID> ids, LocalDateTime logoutDate);
+
+    /**
+     * Loads an open, unexpired session of an active user by refresh token digest, together with its user and role.
+     */
+    @Query("""
+        select l from Login l join fetch l.user u join fetch u.role
+        where l.tokenDigest = ?1 and l.logoutDate is null and l.expirationDate > ?2 and u.active = true""")
+    Optional<Login> findActiveSessionByTokenDigest(String tokenDigest, LocalDateTime currentTime);
+
+    @Query("""
+        select l.expirationDate from Login l where l.id = ?1 and l.logoutDate is null and l.expirationDate > ?2""")
+    Optional<LocalDateTime> findValidExpirationDate(UUID id, LocalDateTime currentTime);
+
+    @Query("""
+        select l.id as id, l.expirationDate as expirationDate from Login l
+        where l.id in ?1 and l.logoutDate is null and l.expirationDate > ?2""")
+    List<SessionExpiration> findValidExpirationDates(Collection<UUID> ids, LocalDateTime currentTime);
+
+    /**
+     * Sessions closed at or after the given date by a logout, not by the sweeper (which sets the logout date
+     * to the expiration date).
+     */
+    @Query("""
+        select l.id as id, l.expirationDate as expirationDate from Login l
+        where l.logoutDate >= ?1 and l.logoutDate < l.expirationDate""")
+    List<SessionExpiration> findLoggedOutSince(LocalDateTime since);
+
+    /**
+     * Locks the next chunk of expired but still open sessions after the given id (keyset pagination).
+     * Rows locked by another instance are skipped, so concurrent sweepers split the work.
+     */
+    @Query(value = """
+        select l.id from login l where l.expiration_date < ?1 and l.logout_date is null and l.id > ?2
+        order by l.id limit ?3 for update skip locked""", nativeQuery = true)
+    List<UUID> lockExpiredSessionIds(LocalDateTime currentTime, UUID afterId, int limit);
+
+    /**
+     * Locks the oldest chunk of sessions closed before the cutoff, skipping rows locked by another instance.
+     */
+    @Query(value = """
+        select l.id from login l where l.logout_date < ?1
+        order by l.logout_date limit ?2 for update skip locked""", nativeQuery = true)
+    List<UUID> lockArchivableSessionIds(LocalDateTime cutoff, int limit);
 
+    @Modifying
     @Query("""
-        select (count(l) > 0) from Login l where l.token = ?1 and l.logoutDate is null and l.expirationDate > ?2""")
-    boolean isTokenValidForUser(String token, LocalDateTime currentTime);
+        delete from Login l where l.id in ?1""")
+    int deleteByIds(Collection<UUID> ids);
 
+    @Modifying
     @Query("""
-        select (count(l) > 0) from Login l where l.id = ?1 and l.logoutDate is null and l.expirationDate > ?2""")
-    boolean isLoginValidForUser(UUID id, LocalDateTime currentTime);
+        update Login l set l.logoutDate = l.expirationDate where l.id in ?1 and l.logoutDate is null""")
+    int expireSessions(Collection<UUID> ids);
 
-    List<Login> findByExpirationDateBeforeAndLogoutDateIsNull(LocalDateTime currentTime);
+    interface SessionExpiration {
+        UUID getId();
 
+        LocalDateTime getExpirationDate();
+    }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.infomedia.abacox.users.entity.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -13,4 +14,6 @@ public interface RoleRepository extends JpaRepository<Role, UUID>, JpaSpecificat
 
     Optional<Role> findByRolename(String rolename);
 
+    boolean existsByLastModifiedDateGreaterThanEqual(LocalDateTime since);
+
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.infomedia.abacox.users.repository;
+
+import com.infomedia.abacox.users.entity.SigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SigningKeyRepository extends JpaRepository<SigningKey, String> {
+
+    List<SigningKey> findAllByOrderByCreatedDateDesc();
+
+    @Modifying
+    @Query("""
+        update SigningKey k set k.retiredDate = ?1 where k.retiredDate is null""")
+    int retireActiveKeys(LocalDateTime retiredDate);
+
+    @Modifying
+    @Query("""
+        delete from SigningKey k where k.retiredDate < ?1""")
+    int deleteRetiredBefore(LocalDateTime cutoff);
+}
@@ -1,13 +1,20 @@
 package com.infomedia.abacox.users.repository;
 
 import com.infomedia.abacox.users.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, UUID>, JpaSpecificationExecutor<User> {
     Optional<User> findByUsername(String username);
@@ -16,7 +23,65 @@ public interface UserRepository extends JpaRepository<User, UUID>, JpaSpecificat
 
     List<User> findByRole_RolenameInAndActive(Collection<String> rolenames, boolean active);
 
+    @EntityGraph(attributePaths = "role")
+    List<User> findByUsernameIn(Collection<String> usernames);
+
     List<User> findByUsernameInAndActive(Collection<String> usernames, boolean active);
 
     boolean existsByEmail(String email);
+
+    /**
+     * Also sets the modification date, so the principal cache sync of every node drops the cached principal
+     * and its epoch.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        update User u set u.sessionEpoch = u.sessionEpoch + 1, u.lastModifiedDate = ?2 where u.id = ?1""")
+    int incrementSessionEpoch(UUID id, LocalDateTime modifiedDate);
+
+    /**
+     * Replaces a legacy MD5 hash only if it is still the one the caller verified, so a password changed
+     * meanwhile is never overwritten with a hash of the old one.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        update User u set u.password = ?3, u.passwordEncoder = null, u.lastModifiedDate = ?4
+        where u.id = ?1 and u.password = ?2
+        and u.passwordEncoder = com.infomedia.abacox.users.constants.PasswordEncodingAlgorithm.MD5""")
+    int upgradeLegacyPassword(UUID id, String legacyPassword, String encodedPassword, LocalDateTime modifiedDate);
+
+    /**
+     * Reads the user's activation with a shared row lock, held until the transaction ends, so a concurrent
+     * deactivation either is seen here or waits for the transaction to commit.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("""
+        select u from User u where u.id = ?1""")
+    Optional<User> findByIdForShare(UUID id);
+
+    @Query("""
+        select u.sessionEpoch from User u where u.id = ?1""")
+    Optional<Long> findSessionEpochById(UUID id);
+
+    interface SessionEpochView {
+        UUID getId();
+
+        long getSessionEpoch();
+    }
+
+    @Query("""
+        select u.id as id, u.sessionEpoch as sessionEpoch from User u where u.id in ?1""")
+    List<SessionEpochView> findSessionEpochsByIdIn(Collection<UUID> ids);
+
+    @Query("""
+        select u.username from User u""")
+    Stream<String> streamAllUsernames();
+
+    @Query("""
+        select u.username from User u where u.createdDate >= ?1""")
+    List<String> findUsernamesCreatedSince(LocalDateTime since);
+
+    @Query("""
+        select u.username from User u where u.lastModifiedDate >= ?1""")
+    List<String> findUsernamesModifiedSince(LocalDateTime since);
 }
\ No newline at end of file
@@ -4,15 +4,22 @@ import com.infomedia.abacox.users.component.configmanager.ConfigService;
 import com.infomedia.abacox.users.component.jwt.InvalidJwtTokenException;
 import com.infomedia.abacox.users.component.jwt.JwtManager;
 import com.infomedia.abacox.users.component.modeltools.ModelConverter;
+import com.infomedia.abacox.users.component.password.PasswordVerificationExecutor;
+import com.infomedia.abacox.users.component.principal.UserPrincipal;
+import com.infomedia.abacox.users.component.session.SessionActivityTracker;
+import com.infomedia.abacox.users.component.throttle.LoginThrottle;
 import com.infomedia.abacox.users.component.configmanager.ConfigKey;
 import com.infomedia.abacox.users.constants.PasswordEncodingAlgorithm;
 import com.infomedia.abacox.users.dto.auth.JwtTokenInfoDto;
+import com.infomedia.abacox.users.dto.auth.TokenIntrospectionDto;
 import com.infomedia.abacox.users.dto.auth.TokenRequestDto;
 import com.infomedia.abacox.users.dto.auth.TokenResultDto;
+import com.infomedia.abacox.users.dto.auth.TokenValidationResultDto;
 import com.infomedia.abacox.users.dto.user.UserDto;
 import com.infomedia.abacox.users.entity.Login;
 import com.infomedia.abacox.users.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
@@ -21,9 +28,11 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -37,56 +46,85 @@ public class AuthService {
     private final ConfigService configService;
     private final Map<PasswordEncodingAlgorithm, PasswordEncoder> passwordEncoders;
     private final PasswordEncoder bcryptPasswordEncoder;
+    private final PasswordVerificationExecutor passwordVerificationExecutor;
+    private final LoginThrottle loginThrottle;
+    private final SessionActivityTracker sessionActivityTracker;
 
     private boolean singleSession = false;
+    private long sessionIdleTimeout = 0;
 
     @PostConstruct
     public void init(){
         singleSession = configService.getValue(ConfigKey.SINGLE_SESSION).asBoolean();
+        sessionIdleTimeout = configService.getValue(ConfigKey.SESSION_IDLE_TIMEOUT).asLong();
         Long sessionMaxAge = configService.getValue(ConfigKey.SESSION_MAX_AGE).asLong();
         jwtManager.setRefreshTokenDurationSec(sessionMaxAge);
         configService.registerUpdateCallback(ConfigKey.SESSION_MAX_AGE, v -> jwtManager.setRefreshTokenDurationSec(v.asLong()));
         configService.registerUpdateCallback(ConfigKey.SINGLE_SESSION, v -> singleSession = v.asBoolean());
+        configService.registerUpdateCallback(ConfigKey.SESSION_IDLE_TIMEOUT, v -> sessionIdleTimeout = v.asLong());
     }
 
-    @Transactional
-    public TokenResultDto token(TokenRequestDto tokenRequestDto){
-        if(tokenRequestDto.getUsername().equals("system")){
-            throw new BadCredentialsException("Invalid credentials");
-        }
+    /**
+     * Issues tokens for a username/password pair. The flow is split in three phases so that no
+     * database connection is held while the password hash is checked:
+     * a short read of the user, connection-free password verification, and a short write
+     * transaction that registers the login (and persists an MD5-to-BCrypt upgrade if one happened).
+     * Attempts over the per-IP or per-username limits are rejected up front by {@link LoginThrottle}.
+     *
+     * @param clientIp the client address, counted against the per-IP attempt limit
+     */
+    public TokenResultDto token(TokenRequestDto tokenRequestDto, String clientIp){
+        // Throttled attempts are rejected before any lookup or hashing
+        loginThrottle.checkAttempt(tokenRequestDto.getUsername(), clientIp);
 
-        User user = findActiveUser(tokenRequestDto.getUsername())
-                .orElseThrow(() -> new BadCredentialsException("Invalid credentials"));
+        UserPrincipal user;
+        String upgradedPassword;
+        try {
+            if(tokenRequestDto.getUsername().equals("system")){
+                throw new BadCredentialsException("Invalid credentials");
+            }
 
-        validatePasswordAndUpgradeIfNecessary(user, tokenRequestDto.getPassword());
+            // Phase 1: short read, usually served by the principal cache
+            user = userService.findPrincipalForLogin(tokenRequestDto.getUsername())
+                    .filter(UserPrincipal::active)
+                    .orElseThrow(() -> new BadCredentialsException("Invalid credentials"));
 
-        // If we reach here, the password was correct. Proceed with token generation.
-        if(singleSession){
-            loginService.registerLogoutAll(user.getId());
+            // Phase 2: password verification, no connection or transaction held
+            upgradedPassword = validatePasswordAndUpgradeIfNecessary(user, tokenRequestDto.getPassword());
+        } catch (BadCredentialsException e) {
+            loginThrottle.recordFailure(tokenRequestDto.getUsername());
+            throw e;
         }
+        loginThrottle.recordSuccess(tokenRequestDto.getUsername());
 
+        // If we reach here, the password was correct. Proceed with token generation.
         Map<String, Object> claims1 = new HashMap<>();
         Map<String, Object> claims2 = new HashMap<>();
-        claims1.put("userId", user.getId());
-        claims1.put("username", user.getUsername());
-        claims1.put("roleId", user.getRole().getId());
-        claims1.put("rolename", user.getRole().getName());
-        claims2.put("userId", user.getId());
-        claims2.put("username", user.getUsername());
-        claims2.put("roleId", user.getRole().getId());
-        claims2.put("rolename", user.getRole().getName());
+        claims1.put("userId", user.id());
+        claims1.put("username", user.username());
+        claims1.put("roleId", user.roleId());
+        claims1.put("rolename", user.roleName());
+        claims2.put("userId", user.id());
+        claims2.put("username", user.username());
+        claims2.put("roleId", user.roleId());
+        claims2.put("rolename", user.roleName());
         JwtManager.TokenInfo refreshTokenInfo = jwtManager.generateRefreshToken(claims1);
 
-        Login login = loginService.registerLogin(user.getId(), refreshTokenInfo.getToken(),
-                refreshTokenInfo.getIssuedAt(), refreshTokenInfo.getExpiration());
+        // Phase 3: short write transaction, or a queued insert when nothing else has to be written
+        Login login = loginService.isWriteBehindEnabled() && !singleSession && upgradedPassword == null
+                ? loginService.queueSession(user.id(), refreshTokenInfo.getToken(),
+                        refreshTokenInfo.getIssuedAt(), refreshTokenInfo.getExpiration())
+                : loginService.openSession(user, refreshTokenInfo.getToken(),
+                        refreshTokenInfo.getIssuedAt(), refreshTokenInfo.getExpiration(), singleSession, upgradedPassword);
 
         claims2.put("loginId", login.getId());
+        putSessionClaims(claims2, loginService.currentSessionEpoch(user), login.getExpirationDate());
 
         JwtManager.TokenInfo downloadTokenInfo = jwtManager.generateDownloadToken(claims2);
         JwtManager.TokenInfo accessTokenInfo = jwtManager.generateAccessToken(claims2);
 
         return TokenResultDto.builder()
-                .user(modelConverter.map(user, UserDto.class))
+                .user(user.user())
                 .accessToken(JwtTokenInfoDto.builder()
                         .token(accessTokenInfo.getToken())
                         .expiresIn(accessTokenInfo.getDuration())
@@ -105,48 +143,57 @@ public class AuthService {
     /**
      * Checks a user's provided password against their stored hash.
      * If the stored hash uses a legacy algorithm (e.g., MD5) and the password is correct,
-     * it atomically upgrades the hash to the modern BCRYPT algorithm.
+     * it computes the replacement BCRYPT hash. Nothing is written here; the caller persists the
+     * upgrade in the same transaction that registers the login.
      *
      * @param user The user entity attempting to authenticate.
      * @param rawPassword The plain-text password provided by the user.
+     * @return the new BCRYPT hash if the password must be upgraded, null otherwise.
      * @throws BadCredentialsException if the password does not match.
      */
-    private void validatePasswordAndUpgradeIfNecessary(User user, String rawPassword) {
+    private String validatePasswordAndUpgradeIfNecessary(UserPrincipal user, String rawPassword) {
         // 1. Determine which encoding algorithm to use
-        PasswordEncodingAlgorithm algorithm = user.getPasswordEncoder() == null
+        PasswordEncodingAlgorithm algorithm = user.passwordEncoder() == null
                 ? PasswordEncodingAlgorithm.BCRYPT // Null means default (Bcrypt)
-                : user.getPasswordEncoder();
+                : user.passwordEncoder();
 
         PasswordEncoder encoder = passwordEncoders.get(algorithm);
         if (encoder == null) {
-            log.error("No password encoder configured for algorithm: {}. Denying login for user '{}'.", algorithm, user.getUsername());
+            log.error("No password encoder configured for algorithm: {}. Denying login for user '{}'.", algorithm, user.username());
             throw new BadCredentialsException("Invalid credentials");
         }
 
         // 2. Validate the password using the determined encoder
-        if (!encoder.matches(rawPassword, user.getPassword())) {
+        if (!passwordVerificationExecutor.matches(encoder, rawPassword, user.password())) {
             throw new BadCredentialsException("Invalid credentials");
         }
 
-        // 3. (CRITICAL) If it was a legacy algorithm, upgrade the password now
+        // 3. (CRITICAL) If it was a legacy algorithm, prepare the upgraded hash
         if (algorithm == PasswordEncodingAlgorithm.MD5) {
-            user.setPassword(bcryptPasswordEncoder.encode(rawPassword));
-            user.setPasswordEncoder(null); // Set to null to mark it as upgraded to the default
-            userService.save(user); // The transaction from token() will commit this change
+            return passwordVerificationExecutor.encode(bcryptPasswordEncoder, rawPassword);
         }
+        return null;
     }
 
+    /**
+     * Issues new access and download tokens for a refresh token. Sessions idle for longer than
+     * SESSION_IDLE_TIMEOUT are closed instead; access tokens already issued stay valid until they expire.
+     */
     public TokenResultDto refresh(String token) {
         Claims claims = jwtManager.validateRefreshToken(token);
 
-        if(!loginService.sessionIsValid(token)){
+        // One query: open, unexpired session of an active user, with user and role
+        Login login = loginService.findActiveSessionByRefreshToken(token)
+                .orElseThrow(() -> new InvalidJwtTokenException("Invalid token"));
+        User user = login.getUser();
+        if(!user.getUsername().equals(claims.get("username", String.class))){
             throw new InvalidJwtTokenException("Invalid token");
         }
-
-        String username = claims.get("username", String.class);
-        User user = findActiveUser(username).orElseThrow(() -> new InvalidJwtTokenException("User not found"));
-
-        Login login = loginService.getByRefreshToken(token);
+        if (isIdle(login)) {
+            loginService.registerLogout(login.getId());
+            throw new InvalidJwtTokenException("Session expired due to inactivity");
+        }
+        sessionActivityTracker.touch(login.getId());
 
         Map<String, Object> newClaims = new HashMap<>();
         newClaims.put("userId", user.getId());
@@ -154,6 +201,7 @@ public class AuthService {
         newClaims.put("roleId", user.getRole().getId());
         newClaims.put("rolename", user.getRole().getName());
         newClaims.put("loginId", login.getId());
+        putSessionClaims(newClaims, loginService.currentSessionEpoch(user), login.getExpirationDate());
         JwtManager.TokenInfo accessTokenInfo = jwtManager.generateAccessToken(newClaims);
         JwtManager.TokenInfo downloadTokenInfo = jwtManager.generateDownloadToken(newClaims);
 
@@ -178,40 +226,200 @@ public class AuthService {
                 .build();
     }
 
+    /**
+     * @return true if the idle timeout is enabled and the session was not used within it. The last use is the
+     * latest of the unflushed touches, the stored last activity and the login date.
+     */
+    private boolean isIdle(Login login) {
+        if (sessionIdleTimeout <= 0) {
+            return false;
+        }
+        LocalDateTime lastActivity = Stream.of(login.getLoginDate(), login.getLastActivity(),
+                        sessionActivityTracker.getPendingActivity(login.getId()))
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElseThrow();
+        return lastActivity.plusSeconds(sessionIdleTimeout).isBefore(LocalDateTime.now());
+    }
+
+    /**
+     * Adds the claims that let access and download tokens be validated without querying the login table:
+     * the user's session epoch and the session expiration in epoch seconds.
+     */
+    private void putSessionClaims(Map<String, Object> claims, long sessionEpoch, LocalDateTime sessionExpiration) {
+        claims.put("epoch", sessionEpoch);
+        claims.put("sexp", sessionExpiration.atZone(ZoneId.systemDefault()).toEpochSecond());
+    }
+
+    /**
+     * Checks the session behind an access or download token. Tokens with session claims are checked
+     * against the in-memory epoch table, tokens issued before those claims existed fall back to the
+     * login table.
+     */
+    private boolean sessionIsValid(Claims claims, UserPrincipal user) {
+        UUID loginId = uuidClaim(claims, "loginId");
+        Number epoch = claims.get("epoch", Number.class);
+        Number sessionExpiration = claims.get("sexp", Number.class);
+        if (epoch == null || sessionExpiration == null) {
+            return loginService.sessionIsValid(loginId);
+        }
+        return loginService.sessionIsValid(user.id(), loginId, epoch.longValue(), sessionExpiration.longValue());
+    }
+
+    /**
+     * @throws InvalidJwtTokenException if the claim is missing or not a UUID
+     */
+    private static UUID uuidClaim(Claims claims, String name) {
+        String value = claims.get(name, String.class);
+        if (value == null) {
+            throw new InvalidJwtTokenException("Invalid token");
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidJwtTokenException("Invalid token");
+        }
+    }
+
     public Login invalidate(String token){
         return loginService.registerLogoutToken(token);
     }
 
-    private Optional<User> findActiveUser(String username){
-        User user = userService.findByUsername(username).orElse(null);
-        if(user==null||!user.isActive()){
-            return Optional.empty();
-        }
-        return Optional.of(user);
+    private Optional<UserPrincipal> findActiveUser(String username){
+        return userService.findPrincipal(username).filter(UserPrincipal::active);
     }
 
-    public User validateAccessToken(String token){
+    public UserPrincipal validateAccessToken(String token){
         Claims claims = jwtManager.validateAccessToken(token);
         String username = claims.get("username", String.class);
-        User user = findActiveUser(username).orElseThrow(() -> new InvalidJwtTokenException("User not found"));
-        UUID loginId = UUID.fromString(claims.get("loginId", String.class));
-        if(!loginService.sessionIsValid(loginId)){
+        UserPrincipal user = findActiveUser(username).orElseThrow(() -> new InvalidJwtTokenException("User not found"));
+        if(!sessionIsValid(claims, user)){
             throw new InvalidJwtTokenException("Invalid token");
         }
+        sessionActivityTracker.touch(uuidClaim(claims, "loginId"));
         return user;
     }
 
-    public User validateDownloadToken(String token){
+    /**
+     * Validates an access token and describes it from its verified claims. Tokens carrying session claims
+     * are answered without loading the user: deactivation bumps the session epoch, so a valid session
+     * implies an active user. Older tokens fall back to {@link #validateAccessToken(String)}.
+     */
+    public TokenIntrospectionDto introspectAccessToken(String token){
+        Claims claims = jwtManager.validateAccessToken(token);
+        TokenIntrospectionDto.TokenIntrospectionDtoBuilder builder = TokenIntrospectionDto.builder()
+                .active(true)
+                .exp(claims.getExpiration().getTime() / 1000);
+        Number epoch = claims.get("epoch", Number.class);
+        Number sessionExpiration = claims.get("sexp", Number.class);
+        if (epoch == null || sessionExpiration == null) {
+            UserPrincipal user = validateAccessToken(token);
+            return builder.userId(user.id())
+                    .username(user.username())
+                    .roleId(user.roleId())
+                    .rolename(user.roleName())
+                    .build();
+        }
+        UUID userId = uuidClaim(claims, "userId");
+        UUID loginId = uuidClaim(claims, "loginId");
+        if (!loginService.sessionIsValid(userId, loginId, epoch.longValue(), sessionExpiration.longValue())) {
+            throw new InvalidJwtTokenException("Invalid token");
+        }
+        sessionActivityTracker.touch(loginId);
+        return builder.userId(userId)
+                .username(claims.get("username", String.class))
+                .roleId(uuidClaim(claims, "roleId"))
+                .rolename(claims.get("rolename", String.class))
+                .build();
+    }
+
+    /**
+     * Validates a batch of access tokens with a constant number of queries: users referenced by the batch
+     * are resolved with one query, epochs not known to this node with one more, and sessions of tokens issued
+     * without session claims with one more.
+     *
+     * @return one result per token, in the same order as the input
+     */
+    public List<TokenValidationResultDto> validateAccessTokens(List<String> tokens){
+        List<Claims> claimsList = new ArrayList<>(tokens.size());
+        List<String> errors = new ArrayList<>(tokens.size());
+        Set<String> usernames = new HashSet<>();
+        Set<UUID> loginIds = new HashSet<>();
+        for (String token : tokens) {
+            try {
+                Claims claims = jwtManager.validateAccessToken(token);
+                UUID loginId = uuidClaim(claims, "loginId");
+                usernames.add(claims.get("username", String.class));
+                if (!hasSessionClaims(claims)) {
+                    loginIds.add(loginId);
+                }
+                claimsList.add(claims);
+                errors.add(null);
+            } catch (JwtException | InvalidJwtTokenException | IllegalArgumentException e) {
+                claimsList.add(null);
+                errors.add(e.getMessage());
+            }
+        }
+
+        Map<String, UserPrincipal> activeUsers = new HashMap<>();
+        userService.findPrincipals(usernames).values().stream()
+                .filter(UserPrincipal::active)
+                .forEach(user -> activeUsers.put(user.username(), user));
+
+        List<LoginService.SessionClaims> sessionClaims = new ArrayList<>(tokens.size());
+        for (Claims claims : claimsList) {
+            UserPrincipal user = claims == null ? null : activeUsers.get(claims.get("username", String.class));
+            sessionClaims.add(user == null || !hasSessionClaims(claims) ? null : new LoginService.SessionClaims(
+                    user.id(), uuidClaim(claims, "loginId"),
+                    claims.get("epoch", Number.class).longValue(), claims.get("sexp", Number.class).longValue()));
+        }
+        List<LoginService.SessionClaims> withEpoch = sessionClaims.stream().filter(Objects::nonNull).toList();
+        Set<LoginService.SessionClaims> validEpochSessions = withEpoch.isEmpty()
+                ? Set.of() : loginService.findValidSessionsByEpoch(withEpoch);
+        Set<UUID> validSessions = loginIds.isEmpty() ? Set.of() : loginService.findValidSessions(loginIds);
+
+        List<TokenValidationResultDto> results = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Claims claims = claimsList.get(i);
+            if (claims == null) {
+                results.add(TokenValidationResultDto.builder().valid(false).error(errors.get(i)).build());
+                continue;
+            }
+            UserPrincipal user = activeUsers.get(claims.get("username", String.class));
+            if (user == null) {
+                results.add(TokenValidationResultDto.builder().valid(false).error("User not found").build());
+                continue;
+            }
+            boolean sessionValid = sessionClaims.get(i) != null
+                    ? validEpochSessions.contains(sessionClaims.get(i))
+                    : validSessions.contains(uuidClaim(claims, "loginId"));
+            if (!sessionValid) {
+                results.add(TokenValidationResultDto.builder().valid(false).error("Invalid token").build());
+            } else {
+                results.add(TokenValidationResultDto.builder().valid(true).user(user.user()).build());
+            }
+        }
+        return results;
+    }
+
+    private static boolean hasSessionClaims(Claims claims) {
+        return claims.get("epoch", Number.class) != null && claims.get("sexp", Number.class) != null;
+    }
+
+    public UserPrincipal validateDownloadToken(String token){
         Claims claims = jwtManager.validateDownloadToken(token);
         String username = claims.get("username", String.class);
-        User user = findActiveUser(username).orElseThrow(() -> new InvalidJwtTokenException("User not found"));
-        UUID loginId = UUID.fromString(claims.get("loginId", String.class));
-        if(!loginService.sessionIsValid(loginId)){
+        UserPrincipal user = findActiveUser(username).orElseThrow(() -> new InvalidJwtTokenException("User not found"));
+        if(!sessionIsValid(claims, user)){
             throw new InvalidJwtTokenException("Invalid token");
         }
         return user;
     }
 
+    public Map<String, Object> getJwks(){
+        return jwtManager.getJwks();
+    }
+
     public String getUsername(){
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         return authentication==null?"anonymousUser":authentication.getName();
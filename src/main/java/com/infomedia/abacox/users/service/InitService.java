@@ -1,5 +1,7 @@
 package com.infomedia.abacox.users.service;
 
+import com.infomedia.abacox.users.component.configmanager.ConfigKey;
+import com.infomedia.abacox.users.component.configmanager.ConfigService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -12,10 +14,49 @@ public class InitService {
 
     private final UserService userService;
     private final RoleService roleService;
+    private final LoginService loginService;
+    private final ConfigService configService;
+
+    private static final int TOKEN_DIGEST_BACKFILL_BATCH_SIZE = 500;
 
     @EventListener(ApplicationReadyEvent.class)
     public void init() {
         roleService.initDefaultRoles();
         userService.initDefaultUsers();
+        userService.rebuildUsernameFilter();
+        backfillTokenDigests();
+        backfillActiveSessions();
+    }
+
+    /**
+     * Copies the logins that were open before active_session existed, once: the copy scans the login table,
+     * so it is not repeated on every startup.
+     */
+    private void backfillActiveSessions() {
+        if (configService.getValue(ConfigKey.ACTIVE_SESSION_BACKFILL_DONE).asBoolean()) {
+            return;
+        }
+        int added = loginService.backfillActiveSessions();
+        configService.updateValue(ConfigKey.ACTIVE_SESSION_BACKFILL_DONE, true);
+        log.info("Backfilled {} active sessions", added);
+    }
+
+    /**
+     * Fills token_digest for the logins created before the column existed, in batches, once.
+     */
+    private void backfillTokenDigests() {
+        if (configService.getValue(ConfigKey.TOKEN_DIGEST_BACKFILL_DONE).asBoolean()) {
+            return;
+        }
+        int total = 0;
+        int updated;
+        do {
+            updated = loginService.backfillTokenDigests(TOKEN_DIGEST_BACKFILL_BATCH_SIZE);
+            total += updated;
+        } while (updated == TOKEN_DIGEST_BACKFILL_BATCH_SIZE);
+        configService.updateValue(ConfigKey.TOKEN_DIGEST_BACKFILL_DONE, true);
+        if (total > 0) {
+            log.info("Backfilled token digest for {} logins", total);
+        }
     }
 }
@@ -0,0 +1,39 @@
+package com.infomedia.abacox.users.service;
+
+import com.infomedia.abacox.users.entity.LoginArchive;
+import com.infomedia.abacox.users.repository.LoginArchiveRepository;
+import com.infomedia.abacox.users.repository.LoginRepository;
+import com.infomedia.abacox.users.service.common.CrudService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class LoginArchiveService extends CrudService<LoginArchive, UUID, LoginArchiveRepository> {
+
+    private final LoginRepository loginRepository;
+
+    public LoginArchiveService(LoginArchiveRepository repository, LoginRepository loginRepository) {
+        super(repository);
+        this.loginRepository = loginRepository;
+    }
+
+    /**
+     * Moves one chunk of sessions closed before the cutoff from the login table to the archive.
+     *
+     * @return the number of sessions archived, zero when there is nothing left to archive
+     */
+    @Transactional
+    public int archiveChunk(LocalDateTime cutoff, int chunkSize) {
+        List<UUID> ids = loginRepository.lockArchivableSessionIds(cutoff, chunkSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        getRepository().copyFromLogin(ids, LocalDateTime.now());
+        loginRepository.deleteByIds(ids);
+        return ids.size();
+    }
+}
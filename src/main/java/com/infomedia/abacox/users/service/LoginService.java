@@ -1,101 +1,379 @@
 package com.infomedia.abacox.users.service;
 
+import com.infomedia.abacox.users.component.events.EventBroadcaster;
+import com.infomedia.abacox.users.component.events.EventType;
 import com.infomedia.abacox.users.component.export.excel.GenericExcelGenerator;
+import com.infomedia.abacox.users.component.jwt.TokenDigest;
+import com.infomedia.abacox.users.component.principal.UserPrincipal;
+import com.infomedia.abacox.users.component.session.SessionEpochRegistry;
+import com.infomedia.abacox.users.component.session.SessionValidityCache;
+import com.infomedia.abacox.users.component.session.SessionWriteBehind;
+import com.infomedia.abacox.users.component.session.store.SessionStore;
+import com.infomedia.abacox.users.dto.login.ActiveSessionCountDto;
+import com.infomedia.abacox.users.entity.ActiveSession;
 import com.infomedia.abacox.users.entity.Login;
+import com.infomedia.abacox.users.entity.User;
 import com.infomedia.abacox.users.exception.ResourceNotFoundException;
 import com.infomedia.abacox.users.repository.LoginRepository;
 import com.infomedia.abacox.users.service.common.CrudService;
 import jakarta.validation.ValidationException;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.UUID;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 
 @Service
 public class LoginService extends CrudService<Login, UUID, LoginRepository> {
 
     private final UserService userService;
+    private final SessionValidityCache sessionValidityCache;
+    private final SessionEpochRegistry sessionEpochRegistry;
+    private final EventBroadcaster eventBroadcaster;
+    private final SessionWriteBehind sessionWriteBehind;
+    private final SessionStore sessionStore;
 
-    public LoginService(LoginRepository repository, UserService userService) {
+    public LoginService(LoginRepository repository, UserService userService, SessionValidityCache sessionValidityCache
+            , SessionEpochRegistry sessionEpochRegistry, EventBroadcaster eventBroadcaster
+            , SessionWriteBehind sessionWriteBehind, SessionStore sessionStore) {
         super(repository);
         this.userService = userService;
+        this.sessionValidityCache = sessionValidityCache;
+        this.sessionEpochRegistry = sessionEpochRegistry;
+        this.eventBroadcaster = eventBroadcaster;
+        this.sessionWriteBehind = sessionWriteBehind;
+        this.sessionStore = sessionStore;
     }
 
+    @Override
+    public Optional<Login> find(UUID id) {
+        return id == null ? Optional.empty() : sessionStore.findById(id);
+    }
+
+    @Override
+    public Login get(UUID id) {
+        return sessionStore.findById(id).orElseThrow(() -> new ResourceNotFoundException(Login.class, id));
+    }
+
+    @Override
+    public Page<Login> find(Specification<Login> specification, Pageable pageable) {
+        return sessionStore.find(specification, pageable);
+    }
 
     public Login registerLogin(UUID userId, String token, LocalDateTime loginDate, LocalDateTime expirationDate) {
-        Login login = Login.builder()
-                .user(userService.get(userId))
-                .token(token)
-                .loginDate(loginDate)
-                .expirationDate(expirationDate)
-                .build();
+        return sessionStore.create(userId, token, TokenDigest.of(token).toHex(), loginDate, expirationDate);
+    }
+
+    /**
+     * Write phase of a login: optionally persists an upgraded password hash, rechecks that the user is still
+     * active, closes the user's other sessions when single-session mode is on, and registers the new login,
+     * all in one short transaction. The password upgrade runs first so that its exclusive row lock is taken
+     * before the shared one of the activation check.
+     *
+     * @throws BadCredentialsException if the user was deactivated after its credentials were checked
+     */
+    @Transactional
+    public Login openSession(UserPrincipal user, String token, LocalDateTime loginDate, LocalDateTime expirationDate,
+                             boolean closeOtherSessions, String upgradedPassword) {
+        if (upgradedPassword != null) {
+            userService.upgradePassword(user, upgradedPassword);
+        }
+        if (!userService.lockIfActive(user.id())) {
+            throw new BadCredentialsException("Invalid credentials");
+        }
+        if (closeOtherSessions) {
+            registerLogoutAll(user.id());
+        }
+        return registerLogin(user.id(), token, loginDate, expirationDate);
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return sessionWriteBehind.isEnabled();
+    }
 
-        return save(login);
+    /**
+     * Opens a session without waiting for it to be persisted, see {@link SessionStore#createDeferred}.
+     *
+     * @return the session, with its id and dates but possibly without its user
+     */
+    public Login queueSession(UUID userId, String token, LocalDateTime loginDate, LocalDateTime expirationDate) {
+        return sessionStore.createDeferred(userId, token, TokenDigest.of(token).toHex(), loginDate, expirationDate);
     }
 
+    @Transactional
     public Login registerLogoutToken(String token) {
-        Login login = getRepository().findByTokenAndLogoutDateIsNull(token)
+        Login login = sessionStore.findOpenByTokenDigest(TokenDigest.of(token).toHex())
                 .orElseThrow(() -> new ResourceNotFoundException(Login.class));
         if(login.getLogoutDate() != null) {
             throw new ValidationException("Token already invalidated");
         }
-        login.setLogoutDate(LocalDateTime.now());
+        sessionValidityCache.revoke(login.getId(), login.getExpirationDate());
+        sessionEpochRegistry.revokeLogin(login.getId());
+        eventBroadcaster.publishAfterCommit(EventType.SESSION_REVOKED, login.getId());
 
-        return save(login);
+        return sessionStore.close(login, LocalDateTime.now());
     }
 
+    @Transactional
     public Login registerLogout(UUID loginId) {
         Login login = get(loginId);
         if(login.getLogoutDate() != null) {
             throw new ValidationException("Login already invalidated");
         }
-        login.setLogoutDate(LocalDateTime.now());
-        return save(login);
+        sessionValidityCache.revoke(login.getId(), login.getExpirationDate());
+        sessionEpochRegistry.revokeLogin(login.getId());
+        eventBroadcaster.publishAfterCommit(EventType.SESSION_REVOKED, login.getId());
+        return sessionStore.close(login, LocalDateTime.now());
     }
 
+    /**
+     * Closes every open session of the user with a single set-based update and bumps the user's session
+     * epoch, so access and download tokens already issued stop being accepted. Having nothing to close
+     * is not an error.
+     *
+     * @return the number of sessions closed
+     */
     @Transactional
-    public List<Login> registerLogoutAll(UUID userId) {
-        List<Login> logins = getRepository().findByUserAndLogoutDateIsNull(userService.get(userId));
-        if(logins.isEmpty()) {
-            throw new ResourceNotFoundException(Login.class);
+    public int registerLogoutAll(UUID userId) {
+        // Truncated to the database precision so the logout date in memory matches the stored one
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        Map<UUID, LocalDateTime> closed = sessionStore.closeAllByUser(userId, now);
+        if (!closed.isEmpty()) {
+            closed.forEach(sessionValidityCache::revoke);
+            eventBroadcaster.publishAfterCommit(EventType.SESSION_REVOKED, closed.keySet());
         }
-        LocalDateTime now = LocalDateTime.now();
-        logins.forEach(login -> login.setLogoutDate(now));
-        return saveAll(logins);
+        userService.bumpSessionEpoch(userId);
+        return closed.size();
     }
 
-    public Login getByRefreshToken(String token) {
-        return getRepository().findByTokenAndLogoutDateIsNull(token)
-                .orElseThrow(() -> new ResourceNotFoundException(Login.class));
+    /**
+     * Lists the open, unexpired sessions, optionally of one user or of the users with one role.
+     */
+    @Transactional(readOnly = true)
+    public Page<ActiveSession> findActiveSessions(UUID userId, UUID roleId, Pageable pageable) {
+        return sessionStore.findActive(userId, roleId, LocalDateTime.now(), pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public long countActiveSessions(UUID userId, UUID roleId) {
+        return sessionStore.countActive(userId, roleId, LocalDateTime.now());
+    }
+
+    @Transactional(readOnly = true)
+    public List<ActiveSessionCountDto> countActiveSessionsPerUser(UUID userId, UUID roleId) {
+        return sessionStore.countActivePerUser(userId, roleId, LocalDateTime.now());
     }
 
-    public boolean sessionIsValid(String token) {
-        return getRepository().isTokenValidForUser(token, LocalDateTime.now());
+    /**
+     * Indexes open sessions created before the active session index existed, see {@link SessionStore#backfillActive}.
+     *
+     * @return the number of sessions added
+     */
+    public int backfillActiveSessions() {
+        return sessionStore.backfillActive(LocalDateTime.now());
+    }
+
+    /**
+     * Resolves a refresh token to its session, user and role in a single query. The session must be
+     * open and unexpired and the user active.
+     */
+    public Optional<Login> findActiveSessionByRefreshToken(String token) {
+        return sessionStore.findActiveByTokenDigest(TokenDigest.of(token).toHex(), LocalDateTime.now());
     }
 
     public boolean sessionIsValid(UUID loginId) {
-        return getRepository().isLoginValidForUser(loginId, LocalDateTime.now());
+        Boolean cached = sessionValidityCache.get(loginId);
+        if (cached != null) {
+            return cached;
+        }
+        Optional<LocalDateTime> expirationDate = sessionStore.findValidExpiration(loginId, LocalDateTime.now());
+        if (expirationDate.isPresent()) {
+            sessionValidityCache.putValid(loginId, expirationDate.get());
+            return true;
+        }
+        sessionValidityCache.putInvalid(loginId);
+        return false;
     }
 
-    @Scheduled(fixedRate = 300000) // Check every five minutes
-    public void checkForExpiredLogins() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Login> expiredLogins = getRepository().findByExpirationDateBeforeAndLogoutDateIsNull(now);
+    /**
+     * Validates a session from the epoch claims of an access or download token, without touching the
+     * login table: the session must not have expired, must not have been closed on its own, and the
+     * token must carry the user's current session epoch.
+     *
+     * @param tokenEpoch the session epoch the token was issued with
+     * @param sessionExpiresAtSec the session (refresh token) expiration, in epoch seconds
+     */
+    public boolean sessionIsValid(UUID userId, UUID loginId, long tokenEpoch, long sessionExpiresAtSec) {
+        if (sessionExpiresAtSec * 1000 <= System.currentTimeMillis() || sessionEpochRegistry.isRevoked(loginId)) {
+            return false;
+        }
+        Long epoch = sessionEpochRegistry.getEpoch(userId);
+        if (epoch == null || tokenEpoch != epoch) {
+            // Unknown, stale, bumped on another node, or the token is revoked: the database decides
+            epoch = loadSessionEpoch(userId);
+        }
+        return epoch != null && tokenEpoch == epoch;
+    }
+
+    /**
+     * Session claims of an access or download token, see {@link #sessionIsValid(UUID, UUID, long, long)}.
+     */
+    public record SessionClaims(UUID userId, UUID loginId, long epoch, long sessionExpiresAtSec) {
+    }
+
+    /**
+     * Batch variant of {@link #sessionIsValid(UUID, UUID, long, long)}. Epochs that are unknown or differ
+     * from a token's are loaded with a single query.
+     *
+     * @return the subset of the given sessions that are valid
+     */
+    public Set<SessionClaims> findValidSessionsByEpoch(Collection<SessionClaims> sessions) {
+        Map<UUID, Long> epochs = new HashMap<>();
+        Set<UUID> toLoad = new HashSet<>();
+        for (SessionClaims session : sessions) {
+            Long epoch = sessionEpochRegistry.getEpoch(session.userId());
+            if (epoch == null || epoch != session.epoch()) {
+                toLoad.add(session.userId());
+            } else {
+                epochs.putIfAbsent(session.userId(), epoch);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            userService.findSessionEpochs(toLoad).forEach((userId, epoch) -> {
+                sessionEpochRegistry.setEpoch(userId, epoch);
+                epochs.put(userId, epoch);
+            });
+        }
+        long now = System.currentTimeMillis();
+        Set<SessionClaims> valid = new HashSet<>();
+        for (SessionClaims session : sessions) {
+            Long epoch = epochs.get(session.userId());
+            if (session.sessionExpiresAtSec() * 1000 > now && !sessionEpochRegistry.isRevoked(session.loginId())
+                    && epoch != null && epoch == session.epoch()) {
+                valid.add(session);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * @return the user's current session epoch, to be embedded in newly issued tokens. Always read from the
+     * database: the epoch table may be behind a bump made on another node, and a token issued with an
+     * older epoch would be rejected there.
+     */
+    public long currentSessionEpoch(UUID userId) {
+        Long epoch = loadSessionEpoch(userId);
+        if (epoch == null) {
+            throw new ResourceNotFoundException(User.class, userId);
+        }
+        return epoch;
+    }
+
+    /**
+     * Epoch for the tokens of a login, taken from the principal the credentials were checked against, or from
+     * the epoch table when it holds a newer one, without a query. A principal cached on this node before a
+     * bump made on another node may still carry the previous epoch until the principal cache sync drops it;
+     * tokens issued with it are rejected by {@link #sessionIsValid(UUID, UUID, long, long)}, never accepted.
+     */
+    public long currentSessionEpoch(UserPrincipal user) {
+        Long known = sessionEpochRegistry.getEpoch(user.id());
+        return known == null ? user.sessionEpoch() : Math.max(known, user.sessionEpoch());
+    }
 
-        expiredLogins.forEach(login -> login.setLogoutDate(login.getExpirationDate()));
+    /**
+     * Same as {@link #currentSessionEpoch(UUID)} for a user that was just loaded from the database, whose
+     * epoch is used instead of a second query.
+     */
+    public long currentSessionEpoch(User user) {
+        sessionEpochRegistry.setEpoch(user.getId(), user.getSessionEpoch());
+        return user.getSessionEpoch();
+    }
+
+    private Long loadSessionEpoch(UUID userId) {
+        Optional<Long> epoch = userService.findSessionEpoch(userId);
+        epoch.ifPresent(value -> sessionEpochRegistry.setEpoch(userId, value));
+        return epoch.orElse(null);
+    }
+
+    /**
+     * Batch variant of {@link #sessionIsValid(UUID)}. Sessions not found in the validity cache are
+     * resolved with a single query.
+     *
+     * @return the subset of the given loginIds whose sessions are valid
+     */
+    public Set<UUID> findValidSessions(Collection<UUID> loginIds) {
+        Set<UUID> valid = new HashSet<>();
+        List<UUID> uncached = new ArrayList<>();
+        for (UUID loginId : loginIds) {
+            Boolean cached = sessionValidityCache.get(loginId);
+            if (cached == null) {
+                uncached.add(loginId);
+            } else if (cached) {
+                valid.add(loginId);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return valid;
+        }
+        sessionStore.findValidExpirations(uncached, LocalDateTime.now()).forEach((loginId, expirationDate) -> {
+            sessionValidityCache.putValid(loginId, expirationDate);
+            valid.add(loginId);
+        });
+        uncached.stream()
+                .filter(loginId -> !valid.contains(loginId))
+                .forEach(sessionValidityCache::putInvalid);
+        return valid;
+    }
 
-        saveAll(expiredLogins);
+    /**
+     * Fills token_digest for one batch of logins created before the column existed.
+     * If a digest is already taken (the same refresh token was stored twice), the row gets a digest
+     * derived from the token and its id instead, so it stays unique without blocking the backfill.
+     *
+     * @return the number of rows updated, less than batchSize once the backfill is complete
+     */
+    @Transactional
+    public int backfillTokenDigests(int batchSize) {
+        List<Login> logins = getRepository().findByTokenDigestIsNull(PageRequest.of(0, batchSize));
+        if (logins.isEmpty()) {
+            return 0;
+        }
+        List<String> digests = logins.stream().map(login -> TokenDigest.of(login.getToken()).toHex()).toList();
+        // Digests already stored, looked up with one query for the whole batch
+        Set<String> takenDigests = new HashSet<>(getRepository().findExistingTokenDigests(digests));
+        for (int i = 0; i < logins.size(); i++) {
+            Login login = logins.get(i);
+            String digest = digests.get(i);
+            if (!takenDigests.add(digest)) {
+                digest = TokenDigest.of(login.getToken() + ":" + login.getId()).toHex();
+                takenDigests.add(digest);
+            }
+            login.setTokenDigest(digest);
+        }
+        saveAll(logins);
+        return logins.size();
+    }
+
+    /**
+     * Closes one chunk of expired sessions, setting their logout date to their expiration date.
+     *
+     * @param afterId keyset cursor, only sessions with a greater id are considered
+     * @return the ids that were closed, in id order; empty when there is nothing left after the cursor
+     */
+    @Transactional
+    public List<UUID> expireSessionsChunk(UUID afterId, LocalDateTime currentTime, int chunkSize) {
+        List<UUID> ids = sessionStore.expireChunk(afterId, currentTime, chunkSize);
+        ids.forEach(sessionValidityCache::invalidate);
+        return ids;
     }
 
     public ByteArrayResource exportExcel(Specification<Login> specification, Pageable pageable, Map<String, String> alternativeHeaders, Set<String> excludeColumns) {
@@ -0,0 +1,43 @@
+package com.infomedia.abacox.users.service;
+
+import com.infomedia.abacox.users.component.jwt.JwtManager;
+import com.infomedia.abacox.users.component.password.PasswordVerificationExecutor;
+import com.infomedia.abacox.users.component.principal.PrincipalCache;
+import com.infomedia.abacox.users.component.principal.UsernameFilter;
+import com.infomedia.abacox.users.component.session.SessionValidityCache;
+import com.infomedia.abacox.users.dto.metrics.BloomFilterStatsDto;
+import com.infomedia.abacox.users.dto.metrics.CacheStatsDto;
+import com.infomedia.abacox.users.dto.metrics.PasswordVerificationStatsDto;
+import com.infomedia.abacox.users.dto.metrics.SessionSweeperStatsDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class MetricsService {
+
+    private final SessionValidityCache sessionValidityCache;
+    private final JwtManager jwtManager;
+    private final PasswordVerificationExecutor passwordVerificationExecutor;
+    private final SessionSweeperService sessionSweeperService;
+    private final PrincipalCache principalCache;
+    private final UsernameFilter usernameFilter;
+
+    public List<CacheStatsDto> getCacheStats() {
+        return List.of(sessionValidityCache.getStats(), jwtManager.getVerifiedTokenCacheStats(), principalCache.getStats());
+    }
+
+    public PasswordVerificationStatsDto getPasswordVerificationStats() {
+        return passwordVerificationExecutor.getStats();
+    }
+
+    public SessionSweeperStatsDto getSessionSweeperStats() {
+        return sessionSweeperService.getStats();
+    }
+
+    public BloomFilterStatsDto getUsernameFilterStats() {
+        return usernameFilter.getStats();
+    }
+}
@@ -6,6 +6,7 @@ import com.infomedia.abacox.users.component.migration.MigrationParams;
 import com.infomedia.abacox.users.component.migration.MigrationUtils;
 import com.infomedia.abacox.users.component.migration.SourceDbConfig;
 import com.infomedia.abacox.users.component.migration.TableMigrationConfig;
+import com.infomedia.abacox.users.component.principal.UsernameFilter;
 import com.infomedia.abacox.users.constants.PasswordEncodingAlgorithm;
 import com.infomedia.abacox.users.dto.migration.MigrationStart;
 import com.infomedia.abacox.users.dto.migration.MigrationStatus;
@@ -39,6 +40,8 @@ public class MigrationService {
     private final DataMigrationExecutor dataMigrationExecutor;
     private final RoleRepository roleRepository;
     private final UserRepository userRepository;
+    private final UserService userService;
+    private final UsernameFilter usernameFilter;
     private final ExecutorService migrationExecutorService = Executors.newSingleThreadExecutor();
 
     // --- State for linking old Perfil IDs to new Role entities ---
@@ -258,7 +261,7 @@ public class MigrationService {
             }
 
             String sanitizedUsername = sanitizeUsername(originalUsername);
-            if (userRepository.existsByUsername(sanitizedUsername) || userRepository.existsByEmail(email)) {
+            if (userService.existsByUsername(sanitizedUsername) || userRepository.existsByEmail(email)) {
                 log.trace("User with sanitized username '{}' or email '{}' already exists. Skipping.", sanitizedUsername, email);
                 return;
             }
@@ -285,6 +288,7 @@ public class MigrationService {
             newUser.setActive(active != null ? active : true);
 
             userRepository.save(newUser);
+            usernameFilter.add(sanitizedUsername);
             log.trace("Successfully migrated user: {}", sanitizedUsername);
 
         } catch (Exception e) {
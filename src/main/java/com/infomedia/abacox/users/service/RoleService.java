@@ -1,6 +1,7 @@
 package com.infomedia.abacox.users.service;
 
 import com.infomedia.abacox.users.component.export.excel.GenericExcelGenerator;
+import com.infomedia.abacox.users.component.principal.PrincipalCache;
 import com.infomedia.abacox.users.dto.role.CreateRole;
 import com.infomedia.abacox.users.dto.role.UpdateRole;
 import com.infomedia.abacox.users.entity.Role;
@@ -16,6 +17,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,8 +28,11 @@ public class RoleService extends CrudService<Role, UUID, RoleRepository> {
 
     public static final List<String> INMUTABLE_ROLES = List.of("system", "admin", "user");
 
-    public RoleService(RoleRepository repository) {
+    private final PrincipalCache principalCache;
+
+    public RoleService(RoleRepository repository, PrincipalCache principalCache) {
         super(repository);
+        this.principalCache = principalCache;
     }
 
     public Role buildFromDto(CreateRole cDto) {
@@ -51,7 +56,10 @@ public class RoleService extends CrudService<Role, UUID, RoleRepository> {
         if(INMUTABLE_ROLES.contains(role.getRolename())) {
             throw new IllegalArgumentException("The role "+role.getRolename()+" cannot be modified");
         }
-        return save(buildFromDto(get(id), uDto));
+        Role saved = save(buildFromDto(get(id), uDto));
+        // Principals embed the role, roles change rarely so drop them all
+        principalCache.invalidateAll();
+        return saved;
     }
 
     @Override
@@ -59,7 +67,9 @@ public class RoleService extends CrudService<Role, UUID, RoleRepository> {
         if(INMUTABLE_ROLES.contains(get(id).getRolename())) {
             throw new IllegalArgumentException("The role "+get(id).getRolename()+" cannot be activated/deactivated");
         }
-        return super.changeActivation(id, active);
+        Role role = super.changeActivation(id, active);
+        principalCache.invalidateAll();
+        return role;
     }
 
     @Transactional
@@ -129,4 +139,8 @@ public class RoleService extends CrudService<Role, UUID, RoleRepository> {
             throw new RuntimeException(e);
         }
     }
+
+    public boolean existsModifiedSince(LocalDateTime since) {
+        return getRepository().existsByLastModifiedDateGreaterThanEqual(since);
+    }
 }
@@ -0,0 +1,142 @@
+package com.infomedia.abacox.users.service;
+
+import com.infomedia.abacox.users.component.configmanager.ConfigKey;
+import com.infomedia.abacox.users.component.configmanager.ConfigService;
+import com.infomedia.abacox.users.dto.metrics.SessionSweeperStatsDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Periodically closes sessions that expired without an explicit logout.
+ *
+ * Work is done in keyset-paginated chunks, each one a short transaction with a single set-based UPDATE,
+ * and every run stops when its time budget is spent; whatever is left is picked up by the next run.
+ * Chunks are selected with FOR UPDATE SKIP LOCKED, so several replicas can sweep at the same time
+ * without blocking each other or closing a session twice.
+ *
+ * The same service archives old closed sessions (see {@link #archive()}) so the login table only
+ * keeps the recent history that session queries actually need.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class SessionSweeperService {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final LoginService loginService;
+    private final LoginArchiveService loginArchiveService;
+    private final ConfigService configService;
+
+    @Value("${auth.session-sweeper.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${auth.session-sweeper.time-budget-ms:10000}")
+    private long timeBudgetMs;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicReference<SessionSweeperStatsDto> lastRun = new AtomicReference<>(new SessionSweeperStatsDto());
+    private final LongAdder totalRuns = new LongAdder();
+    private final LongAdder totalSessions = new LongAdder();
+    private final AtomicBoolean archiving = new AtomicBoolean(false);
+    private final LongAdder totalArchived = new LongAdder();
+
+    @Scheduled(fixedDelay = 300000) // Sweep five minutes after the previous run ends
+    public void sweep() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        LocalDateTime start = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + timeBudgetMs * 1_000_000;
+        long sessions = 0;
+        int chunks = 0;
+        boolean budgetExhausted = false;
+        try {
+            UUID cursor = FIRST_ID;
+            while (true) {
+                List<UUID> closed = loginService.expireSessionsChunk(cursor, start, chunkSize);
+                if (closed.isEmpty()) {
+                    break;
+                }
+                chunks++;
+                sessions += closed.size();
+                totalSessions.add(closed.size());
+                if (closed.size() < chunkSize) {
+                    break;
+                }
+                if (System.nanoTime() >= deadline) {
+                    budgetExhausted = true;
+                    break;
+                }
+                cursor = closed.get(closed.size() - 1);
+            }
+        } catch (Exception e) {
+            log.error("Error sweeping expired sessions", e);
+        } finally {
+            long durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            totalRuns.increment();
+            lastRun.set(SessionSweeperStatsDto.builder()
+                    .lastRunStart(start)
+                    .lastRunDurationMillis(durationMillis)
+                    .lastRunSessions(sessions)
+                    .lastRunChunks(chunks)
+                    .lastRunBudgetExhausted(budgetExhausted)
+                    .build());
+            running.set(false);
+        }
+        if (sessions > 0) {
+            log.info("Closed {} expired sessions in {} chunks{}", sessions, chunks
+                    , budgetExhausted ? ", time budget exhausted" : "");
+        }
+    }
+
+    /**
+     * Moves sessions closed more than LOGIN_RETENTION_DAYS ago to the login archive, in chunks and
+     * within the same time budget as the sweep.
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 600000) // Archive every hour
+    public void archive() {
+        int retentionDays = configService.getValue(ConfigKey.LOGIN_RETENTION_DAYS).asInt();
+        if (retentionDays <= 0 || !archiving.compareAndSet(false, true)) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        long deadline = System.nanoTime() + timeBudgetMs * 1_000_000;
+        long archived = 0;
+        try {
+            int moved;
+            do {
+                moved = loginArchiveService.archiveChunk(cutoff, chunkSize);
+                archived += moved;
+                totalArchived.add(moved);
+            } while (moved == chunkSize && System.nanoTime() < deadline);
+        } catch (Exception e) {
+            log.error("Error archiving closed sessions", e);
+        } finally {
+            archiving.set(false);
+        }
+        if (archived > 0) {
+            log.info("Archived {} sessions closed before {}", archived, cutoff);
+        }
+    }
+
+    public SessionSweeperStatsDto getStats() {
+        return lastRun.get().toBuilder()
+                .running(running.get())
+                .totalRuns(totalRuns.sum())
+                .totalSessions(totalSessions.sum())
+                .totalArchived(totalArchived.sum())
+                .build();
+    }
+}
@@ -1,34 +1,65 @@
 package com.infomedia.abacox.users.service;
 
+import com.infomedia.abacox.users.component.events.EventBroadcaster;
+import com.infomedia.abacox.users.component.events.EventType;
 import com.infomedia.abacox.users.component.export.excel.GenericExcelGenerator;
+import com.infomedia.abacox.users.component.modeltools.ModelConverter;
+import com.infomedia.abacox.users.component.principal.PrincipalCache;
+import com.infomedia.abacox.users.component.principal.UserPrincipal;
+import com.infomedia.abacox.users.component.principal.UsernameFilter;
+import com.infomedia.abacox.users.component.session.SessionEpochRegistry;
 import com.infomedia.abacox.users.dto.user.CreateUser;
 import com.infomedia.abacox.users.dto.user.UpdateUser;
 import com.infomedia.abacox.users.dto.user.UserContactInfoDto;
+import com.infomedia.abacox.users.dto.user.UserDto;
 import com.infomedia.abacox.users.entity.User;
+import com.infomedia.abacox.users.exception.ResourceNotFoundException;
 import com.infomedia.abacox.users.repository.UserRepository;
 import com.infomedia.abacox.users.service.common.CrudService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 public class UserService extends CrudService<User, UUID, UserRepository> {
     private final RoleService roleService;
     public static final List<String> INMUTABLE_USERS = List.of("system");
     private final PasswordEncoder passwordEncoder;
+    private final SessionEpochRegistry sessionEpochRegistry;
+    private final EventBroadcaster eventBroadcaster;
+    private final PrincipalCache principalCache;
+    private final ModelConverter modelConverter;
+    private final UsernameFilter usernameFilter;
 
-    public UserService(UserRepository repository, RoleService roleService, PasswordEncoder passwordEncoder) {
+    @Value("${auth.username-filter.sync-overlap:300}")
+    private long usernameFilterSyncOverlapSec;
+
+    @Value("${auth.principal-cache.sync-overlap:60}")
+    private long principalCacheSyncOverlapSec;
+
+    public UserService(UserRepository repository, RoleService roleService, PasswordEncoder passwordEncoder
+            , SessionEpochRegistry sessionEpochRegistry, EventBroadcaster eventBroadcaster
+            , PrincipalCache principalCache, ModelConverter modelConverter, UsernameFilter usernameFilter) {
         super(repository);
         this.roleService = roleService;
         this.passwordEncoder = passwordEncoder;
+        this.sessionEpochRegistry = sessionEpochRegistry;
+        this.eventBroadcaster = eventBroadcaster;
+        this.principalCache = principalCache;
+        this.modelConverter = modelConverter;
+        this.usernameFilter = usernameFilter;
     }
 
     public User buildFromDto(CreateUser cDto) {
@@ -55,30 +86,223 @@ public class UserService extends CrudService<User, UUID, UserRepository> {
 
     @Transactional
     public User create(CreateUser cDto) {
-        return save(buildFromDto(cDto));
+        User user = save(buildFromDto(cDto));
+        usernameFilter.add(user.getUsername());
+        principalCache.invalidate(user.getUsername());
+        return user;
     }
 
     @Transactional
     public User update(UUID id, UpdateUser uDto) {
-        User user = buildFromDto(get(id), uDto);
+        User user = get(id);
+        UUID previousRoleId = user.getRole().getId();
+        buildFromDto(user, uDto);
         if(INMUTABLE_USERS.contains(user.getUsername())) {
             throw new IllegalArgumentException("The user "+user.getUsername()+" cannot be modified");
         }
-        return save(user);
+        User saved = save(user);
+        principalCache.invalidate(saved.getUsername());
+        if (!previousRoleId.equals(saved.getRole().getId())) {
+            // Tokens carry the role, revoke the ones issued with the previous role
+            bumpSessionEpoch(id);
+            eventBroadcaster.publishAfterCommit(EventType.ROLE_CHANGED, id);
+        }
+        return saved;
     }
 
     @Override
+    @Transactional
     public User changeActivation(UUID id, boolean active) {
         if(INMUTABLE_USERS.contains(get(id).getUsername())) {
             throw new IllegalArgumentException("The user "+get(id).getUsername()+" cannot be activated/deactivated");
         }
-        return super.changeActivation(id, active);
+        User user = super.changeActivation(id, active);
+        principalCache.invalidate(user.getUsername());
+        if (!active) {
+            bumpSessionEpoch(id);
+            eventBroadcaster.publishAfterCommit(EventType.USER_DEACTIVATED, id);
+        }
+        return user;
+    }
+
+    /**
+     * Increments the user's session epoch, invalidating every access and download token issued before.
+     *
+     * @return the new epoch
+     */
+    @Transactional
+    public long bumpSessionEpoch(UUID id) {
+        getRepository().incrementSessionEpoch(id, LocalDateTime.now());
+        long epoch = getRepository().findSessionEpochById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(User.class, id));
+        sessionEpochRegistry.putEpochAfterCommit(id, epoch);
+        return epoch;
+    }
+
+    public Optional<Long> findSessionEpoch(UUID id) {
+        return getRepository().findSessionEpochById(id);
+    }
+
+    /**
+     * @return the session epochs of the users that exist, loaded with one query
+     */
+    public Map<UUID, Long> findSessionEpochs(Collection<UUID> ids) {
+        Map<UUID, Long> epochs = new HashMap<>();
+        getRepository().findSessionEpochsByIdIn(ids).forEach(view -> epochs.put(view.getId(), view.getSessionEpoch()));
+        return epochs;
+    }
+
+    /**
+     * Replaces the legacy MD5 hash the principal was verified against with an already computed default
+     * (BCRYPT) hash. Nothing is written if the password was changed or upgraded since the principal was read.
+     *
+     * @return true if the hash was replaced
+     */
+    @Transactional
+    public boolean upgradePassword(UserPrincipal user, String encodedPassword) {
+        int updated = getRepository().upgradeLegacyPassword(user.id(), user.password(), encodedPassword, LocalDateTime.now());
+        principalCache.invalidate(user.username());
+        return updated > 0;
+    }
+
+    /**
+     * Checks that the user is still active and keeps it locked against deactivation until the calling
+     * transaction ends.
+     */
+    @Transactional
+    public boolean lockIfActive(UUID id) {
+        return getRepository().findByIdForShare(id).map(User::isActive).orElse(false);
+    }
+
+    /**
+     * Looks a user up by username for a login attempt. Same as {@link #findPrincipal(String)}, except that
+     * usernames the username filter rules out are answered without a query. The filter may not know yet a
+     * user created on another node within the last sync interval, so it is only used here, where the
+     * username comes from an unauthenticated request, and never for names taken from a verified token.
+     */
+    public Optional<UserPrincipal> findPrincipalForLogin(String username) {
+        UserPrincipal cached = principalCache.get(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (!usernameFilter.mightExist(username)) {
+            return Optional.empty();
+        }
+        Optional<UserPrincipal> principal = findPrincipal(username);
+        if (principal.isEmpty()) {
+            usernameFilter.recordFalsePositive();
+        }
+        return principal;
+    }
+
+    /**
+     * Looks a user up by username through the principal cache.
+     */
+    public Optional<UserPrincipal> findPrincipal(String username) {
+        UserPrincipal cached = principalCache.get(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long generation = principalCache.currentGeneration();
+        return getRepository().findByUsername(username).map(found -> toPrincipal(found, generation));
+    }
+
+    /**
+     * Batch variant of {@link #findPrincipal(String)}, users not in the cache are loaded with one query.
+     *
+     * @return the principals found, keyed by username
+     */
+    public Map<String, UserPrincipal> findPrincipals(Collection<String> usernames) {
+        Map<String, UserPrincipal> principals = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String username : usernames) {
+            UserPrincipal cached = principalCache.get(username);
+            if (cached != null) {
+                principals.put(username, cached);
+            } else {
+                uncached.add(username);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            long generation = principalCache.currentGeneration();
+            List<User> found = findByUsernames(uncached);
+            found.forEach(user -> principals.put(user.getUsername(), toPrincipal(user, generation)));
+        }
+        return principals;
+    }
+
+    private UserPrincipal toPrincipal(User user, long generation) {
+        UserPrincipal principal = UserPrincipal.of(user, modelConverter.map(user, UserDto.class));
+        principalCache.put(principal, generation);
+        return principal;
     }
 
     public Optional<User> findByUsername(String username) {
         return getRepository().findByUsername(username);
     }
 
+    public List<User> findByUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return List.of();
+        }
+        return getRepository().findByUsernameIn(usernames);
+    }
+
+    /**
+     * Checks whether a user has the username. Always queries: the username filter may not know a user
+     * created on another node yet, and a false "no" here would create a duplicate.
+     */
+    public boolean existsByUsername(String username) {
+        return getRepository().existsByUsername(username);
+    }
+
+    /**
+     * Rebuilds the username filter from every username in the database. Runs at startup and then
+     * hourly, which also drops deleted usernames and resizes the filter as the user count grows.
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    @Transactional(readOnly = true)
+    public void rebuildUsernameFilter() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        try (Stream<String> usernames = getRepository().streamAllUsernames()) {
+            usernameFilter.rebuild(getRepository().count(), usernames, startedAt);
+        }
+    }
+
+    /**
+     * Adds the usernames of users created since the last sync, which covers users created on other nodes.
+     * The query window overlaps the previous one so rows committed late are not missed.
+     */
+    @Scheduled(fixedDelayString = "${auth.username-filter.sync-interval-ms:30000}")
+    @Transactional(readOnly = true)
+    public void syncUsernameFilter() {
+        if (!usernameFilter.isReady()) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime since = usernameFilter.getSyncedUntil().minusSeconds(usernameFilterSyncOverlapSec);
+        getRepository().findUsernamesCreatedSince(since).forEach(usernameFilter::add);
+        usernameFilter.setSyncedUntil(startedAt);
+    }
+
+    /**
+     * Invalidates the cached principals of users modified since the last sync, and every cached principal if
+     * a role was modified, which covers password, activation and role changes made on other nodes.
+     * The query window overlaps the previous one so rows committed late are not missed.
+     */
+    @Scheduled(fixedDelayString = "${auth.principal-cache.sync-interval-ms:5000}")
+    @Transactional(readOnly = true)
+    public void syncPrincipalCache() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime since = principalCache.getSyncedUntil().minusSeconds(principalCacheSyncOverlapSec);
+        if (roleService.existsModifiedSince(since)) {
+            principalCache.invalidateAll();
+        } else {
+            getRepository().findUsernamesModifiedSince(since).forEach(principalCache::invalidate);
+        }
+        principalCache.setSyncedUntil(startedAt);
+    }
+
     @Transactional
     public void initDefaultSystemUser() {
         String username = "system";
@@ -92,6 +316,7 @@ public class UserService extends CrudService<User, UUID, UserRepository> {
                     .role(roleService.getDefaultRoleSystem())
                     .build();
             save(user);
+            usernameFilter.add(username);
         }
     }
 
@@ -108,6 +333,7 @@ public class UserService extends CrudService<User, UUID, UserRepository> {
                     .role(roleService.getDefaultRoleAdmin())
                     .build();
             save(user);
+            usernameFilter.add(username);
         }
     }
 
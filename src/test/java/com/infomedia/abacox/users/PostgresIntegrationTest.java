@@ -0,0 +1,28 @@
+package com.infomedia.abacox.users;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base of the tests that boot the application: a PostgreSQL container shared by every test class, so the
+ * native SQL of the session store runs on the database it is written for, and a mock task scheduler, so no
+ * scheduled job (sweeper, syncs, flushes) runs concurrently with a test.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Testcontainers
+public abstract class PostgresIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @MockBean
+    private TaskScheduler taskScheduler;
+}
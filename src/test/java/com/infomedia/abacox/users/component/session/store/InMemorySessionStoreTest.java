@@ -0,0 +1,51 @@
+package com.infomedia.abacox.users.component.session.store;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemorySessionStoreTest {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    @Test
+    void idOrderIsUnsigned() {
+        UUID low = new UUID(0x7fffffffffffffffL, -1L);
+        UUID high = new UUID(0x8000000000000000L, 0L);
+        assertTrue(InMemorySessionStore.ID_ORDER.compare(FIRST_ID, high) < 0);
+        assertTrue(InMemorySessionStore.ID_ORDER.compare(low, high) < 0);
+        assertTrue(InMemorySessionStore.ID_ORDER.compare(new UUID(1L, 0x8000000000000000L), new UUID(1L, 1L)) > 0);
+    }
+
+    @Test
+    void expireChunkReachesIdsWithTheHighBitSet() {
+        InMemorySessionStore store = new InMemorySessionStore(null, null, null);
+        ReflectionTestUtils.setField(store, "snapshotFile", "");
+        LocalDateTime now = LocalDateTime.now();
+        Set<UUID> created = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            created.add(store.create(UUID.randomUUID(), "token-" + i, "digest-" + i, now.minusHours(2),
+                    now.minusHours(1)).getId());
+        }
+        assertTrue(created.stream().anyMatch(id -> id.getMostSignificantBits() < 0));
+
+        // Same keyset walk as SessionSweeperService
+        Set<UUID> expired = new HashSet<>();
+        UUID cursor = FIRST_ID;
+        List<UUID> chunk;
+        while (!(chunk = store.expireChunk(cursor, now, 30)).isEmpty()) {
+            expired.addAll(chunk);
+            cursor = chunk.get(chunk.size() - 1);
+        }
+
+        assertEquals(created, expired);
+        assertTrue(store.expireChunk(FIRST_ID, now, 30).isEmpty());
+    }
+}
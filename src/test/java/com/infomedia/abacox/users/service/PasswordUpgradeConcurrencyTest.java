@@ -0,0 +1,104 @@
+package com.infomedia.abacox.users.service;
+
+import com.infomedia.abacox.users.PostgresIntegrationTest;
+import com.infomedia.abacox.users.component.principal.UserPrincipal;
+import com.infomedia.abacox.users.constants.PasswordEncodingAlgorithm;
+import com.infomedia.abacox.users.entity.User;
+import com.infomedia.abacox.users.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Login write phase racing password upgrades, password changes and deactivations.
+ */
+class PasswordUpgradeConcurrencyTest extends PostgresIntegrationTest {
+
+    private static final String MD5_PASSWORD = "5f4dcc3b5aa765d61d8327deb882cf99";
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private RoleService roleService;
+    @Autowired
+    private LoginService loginService;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void concurrentUpgradesWriteOnce() throws Exception {
+        UserPrincipal principal = createLegacyUser();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String hash = "$2a$10$upgraded" + i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return userService.upgradePassword(principal, hash);
+                }));
+            }
+            start.countDown();
+            int upgraded = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    upgraded++;
+                }
+            }
+            assertEquals(1, upgraded);
+        } finally {
+            executor.shutdownNow();
+        }
+        User user = userRepository.findById(principal.id()).orElseThrow();
+        assertTrue(user.getPassword().startsWith("$2a$10$upgraded"));
+        assertNull(user.getPasswordEncoder());
+    }
+
+    @Test
+    void upgradeKeepsPasswordChangedMeanwhile() {
+        UserPrincipal principal = createLegacyUser();
+        User user = userRepository.findById(principal.id()).orElseThrow();
+        user.setPassword("$2a$10$changedByAdmin");
+        user.setPasswordEncoder(null);
+        userRepository.save(user);
+
+        assertFalse(userService.upgradePassword(principal, "$2a$10$upgradedFromOldPassword"));
+        assertEquals("$2a$10$changedByAdmin", userRepository.findById(principal.id()).orElseThrow().getPassword());
+    }
+
+    @Test
+    void openSessionRejectsUserDeactivatedMeanwhile() {
+        UserPrincipal principal = createLegacyUser();
+        userService.changeActivation(principal.id(), false);
+
+        LocalDateTime now = LocalDateTime.now();
+        assertThrows(BadCredentialsException.class, () -> loginService.openSession(principal, UUID.randomUUID().toString(),
+                now, now.plusHours(1), false, "$2a$10$upgraded"));
+        assertEquals(0, loginService.countActiveSessions(principal.id(), null));
+    }
+
+    private UserPrincipal createLegacyUser() {
+        String username = "legacy" + UUID.randomUUID().toString().substring(0, 8);
+        userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@test.com")
+                .password(MD5_PASSWORD)
+                .passwordEncoder(PasswordEncodingAlgorithm.MD5)
+                .role(roleService.getDefaultRoleUser())
+                .build());
+        return userService.findPrincipal(username).orElseThrow();
+    }
+}
@@ -0,0 +1,55 @@
+package com.infomedia.abacox.users.service;
+
+import com.infomedia.abacox.users.PostgresIntegrationTest;
+import com.infomedia.abacox.users.dto.auth.TokenRequestDto;
+import com.infomedia.abacox.users.dto.auth.TokenResultDto;
+import com.infomedia.abacox.users.dto.user.CreateUser;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * A token refresh resolves the session, its user and role with a single statement.
+ */
+class RefreshQueryCountTest extends PostgresIntegrationTest {
+
+    private static final String PASSWORD = "@Abcd1234";
+
+    @Autowired
+    private AuthService authService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private RoleService roleService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void refreshIssuesOneQuery() {
+        String username = "refresh" + UUID.randomUUID().toString().substring(0, 8);
+        CreateUser createUser = new CreateUser();
+        createUser.setUsername(username);
+        createUser.setPassword(PASSWORD);
+        createUser.setEmail(username + "@test.com");
+        createUser.setRoleId(roleService.getDefaultRoleUser().getId());
+        userService.create(createUser);
+        String refreshToken = authService.token(new TokenRequestDto(username, PASSWORD), "127.0.0.1")
+                .getRefreshToken().getToken();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        TokenResultDto result = authService.refresh(refreshToken);
+
+        assertNotNull(result.getAccessToken().getToken());
+        assertEquals(username, result.getUser().getUsername());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryExecutionCount());
+    }
+}